@@ -0,0 +1,13 @@
+#!/bin/sh
+# Lance les benchmarks JMH avec un profil fixe (JVM, tas, profileur GC)
+# Usage : ./run.sh [regex des benchmarks] [options JMH]
+set -e
+cd "$(dirname "$0")"
+
+mkdir -p results
+OUT="results/jmh-$(date +%Y%m%d-%H%M%S).json"
+
+java -Xms1g -Xmx1g -XX:+UseG1GC -jar target/benchmarks.jar \
+    -prof gc -rf json -rff "$OUT" "$@"
+
+echo "Résultats : $OUT"
@@ -0,0 +1,46 @@
+package fr.fullstack.shopapp.benchmark;
+
+import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.util.ErrorValidation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-XX:+UseG1GC"})
+public class ErrorValidationBenchmark {
+    private Errors errors;
+
+    // validation errors of the request body
+    @Param({"1", "5", "20"})
+    private int count;
+
+    @Benchmark
+    public String getErrorValidationMessage() {
+        return ErrorValidation.getErrorValidationMessage(errors);
+    }
+
+    @Setup
+    public void setup() {
+        errors = new BeanPropertyBindingResult(new Product(), "product");
+        for (int i = 0; i < count; i++) {
+            errors.rejectValue("price", "PositiveOrZero", "Le prix doit être positif (" + i + ")");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package fr.fullstack.shopapp.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.fullstack.shopapp.model.Category;
+import fr.fullstack.shopapp.model.LocalizedProduct;
+import fr.fullstack.shopapp.model.OpeningHoursShop;
+import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.model.Shop;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// serialization of a page of the list endpoints, as written by the MVC message converter
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-XX:+UseG1GC"})
+public class JacksonPageBenchmark {
+    private static final int PAGE_SIZE = 50;
+
+    private ObjectMapper mapper;
+
+    private Page<Product> products;
+
+    private Page<Shop> shops;
+
+    @Benchmark
+    public byte[] serializeProductPage() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public byte[] serializeShopPage() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(shops);
+    }
+
+    @Setup
+    public void setup() {
+        // same modules as the ObjectMapper of Spring Boot (jsr310, jdk8, parameter names)
+        mapper = Jackson2ObjectMapperBuilder.json().findModulesViaServiceLoader(true).build();
+
+        PageRequest pageable = PageRequest.of(0, PAGE_SIZE, Sort.by("id"));
+        List<Category> categories = new ArrayList<Category>();
+        for (int i = 1; i <= 2; i++) {
+            Category category = new Category();
+            category.setId(i);
+            category.setName("Catégorie " + i);
+            categories.add(category);
+        }
+
+        List<Shop> shopList = new ArrayList<Shop>(PAGE_SIZE);
+        List<Product> productList = new ArrayList<Product>(PAGE_SIZE);
+        for (int i = 1; i <= PAGE_SIZE; i++) {
+            Shop shop = shop(i);
+            shopList.add(shop);
+            productList.add(product(i, shop, categories));
+        }
+        shops = new PageImpl<Shop>(shopList, pageable, 1000);
+        products = new PageImpl<Product>(productList, pageable, 1000);
+    }
+
+    private LocalizedProduct localizedProduct(long id, String locale, String name) {
+        LocalizedProduct localizedProduct = new LocalizedProduct();
+        localizedProduct.setId(id);
+        localizedProduct.setLocale(locale);
+        localizedProduct.setName(name);
+        localizedProduct.setDescription("Description du produit " + name);
+        return localizedProduct;
+    }
+
+    private Product product(long id, Shop shop, List<Category> categories) {
+        Product product = new Product();
+        product.setId(id);
+        product.setPriceMinor(999 + id * 100);
+        product.setShop(shop);
+        product.setCategories(categories);
+        product.setLocalizedProducts(List.of(
+                localizedProduct(id * 2, "FR", "Produit " + id),
+                localizedProduct(id * 2 + 1, "EN", "Product " + id)));
+        return product;
+    }
+
+    private Shop shop(long id) {
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setName("Boutique " + id);
+        shop.setInVacations(id % 5 == 0);
+        shop.setNbProducts(id * 3);
+        shop.setNbCategories(2);
+        List<OpeningHoursShop> openingHours = new ArrayList<OpeningHoursShop>();
+        for (int day = 1; day <= 5; day++) {
+            OpeningHoursShop hours = new OpeningHoursShop();
+            hours.setId(id * 10 + day);
+            hours.setDay(day);
+            hours.setOpenAt(LocalTime.of(9, 0));
+            hours.setCloseAt(LocalTime.of(18, 0));
+            openingHours.add(hours);
+        }
+        shop.setOpeningHours(openingHours);
+        return shop;
+    }
+}
@@ -0,0 +1,66 @@
+package fr.fullstack.shopapp.benchmark;
+
+import fr.fullstack.shopapp.model.OpeningHoursShop;
+import fr.fullstack.shopapp.service.OpeningHoursService;
+import fr.fullstack.shopapp.util.WeekMinutes;
+import fr.fullstack.shopapp.util.WeeklySchedule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// worst case of the overlap check: no overlap, the whole week is swept
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-XX:+UseG1GC"})
+public class OpeningHoursServiceBenchmark {
+    private final OpeningHoursService service = new OpeningHoursService();
+
+    private List<OpeningHoursShop> openingHours;
+
+    private WeeklySchedule schedule;
+
+    // opening hours of the shop, spread over the 7 days (at most 12 per day)
+    @Param({"7", "21", "70"})
+    private int size;
+
+    @Benchmark
+    public boolean hasOverlappingHours() {
+        return service.hasOverlappingHours(openingHours);
+    }
+
+    // saturday 23:30, after the last opening: the search goes up to the end of the week
+    @Benchmark
+    public int minutesUntilOpening() {
+        return schedule.minutesUntilOpening(5 * WeekMinutes.MINUTES_PER_DAY + 23 * 60 + 30);
+    }
+
+    @Setup
+    public void setup() {
+        openingHours = new ArrayList<OpeningHoursShop>(size);
+        for (int i = 0; i < size; i++) {
+            int slot = i / 7;
+            OpeningHoursShop hours = new OpeningHoursShop();
+            hours.setDay(i % 7 + 1);
+            hours.setOpenAt(LocalTime.of(slot * 2, 0));
+            hours.setCloseAt(LocalTime.of(slot * 2 + 1, 0));
+            openingHours.add(hours);
+        }
+        schedule = service.toSchedule(openingHours);
+    }
+}
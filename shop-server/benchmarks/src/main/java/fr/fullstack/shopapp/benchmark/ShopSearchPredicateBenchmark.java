@@ -0,0 +1,99 @@
+package fr.fullstack.shopapp.benchmark;
+
+import fr.fullstack.shopapp.config.MyElasticsearchAnalysisConfigurer;
+import fr.fullstack.shopapp.model.Shop;
+import fr.fullstack.shopapp.search.ShopPredicates;
+import fr.fullstack.shopapp.util.WeekMinutes;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.AnnotatedTypeSource;
+import org.hibernate.search.mapper.pojo.mapping.definition.programmatic.TypeMappingStep;
+import org.hibernate.search.mapper.pojo.standalone.mapping.CloseableSearchMapping;
+import org.hibernate.search.mapper.pojo.standalone.mapping.SearchMapping;
+import org.hibernate.search.mapper.pojo.standalone.mapping.StandalonePojoMappingConfigurer;
+import org.hibernate.search.mapper.pojo.standalone.session.SearchSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the Elasticsearch query of the shops search, without sending it: the
+ * Shop mapping is bootstrapped with the standalone POJO mapper and no cluster.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-XX:+UseG1GC"})
+public class ShopSearchPredicateBenchmark {
+    private Optional<LocalDate> createdAfter;
+
+    private Optional<LocalDate> createdBefore;
+
+    // none: match all, text: full text only, all: full text and every filter
+    @Param({"none", "text", "all"})
+    private String filters;
+
+    private Optional<Boolean> inVacations;
+
+    private Optional<Integer> openAt;
+
+    private CloseableSearchMapping mapping;
+
+    private String searchText;
+
+    private SearchSession session;
+
+    @Benchmark
+    public String buildShopSearchQuery() {
+        return session.search(Shop.class)
+                .selectEntityReference()
+                .where(f -> ShopPredicates.search(f, searchText, inVacations, createdAfter, createdBefore, openAt))
+                .toQuery()
+                .queryString();
+    }
+
+    @Setup
+    public void setup() {
+        mapping = SearchMapping.builder(AnnotatedTypeSource.fromClasses(Shop.class))
+                .property("hibernate.search.backend.version", "7.17")
+                .property("hibernate.search.backend.version_check.enabled", false)
+                .property("hibernate.search.backend.analysis.configurer",
+                        MyElasticsearchAnalysisConfigurer.class.getName())
+                .property("hibernate.search.schema_management.strategy", "none")
+                .property("hibernate.search.mapping.configurer", (StandalonePojoMappingConfigurer) context -> {
+                    // the entity and its id are declared by Hibernate ORM in the server
+                    TypeMappingStep shop = context.programmaticMapping().type(Shop.class);
+                    shop.searchEntity();
+                    shop.property("id").documentId();
+                })
+                .build();
+        session = mapping.createSession();
+
+        boolean all = filters.equals("all");
+        searchText = filters.equals("none") ? null : "boulangerie du centre";
+        inVacations = all ? Optional.of(false) : Optional.empty();
+        createdAfter = all ? Optional.of(LocalDate.of(2022, 1, 1)) : Optional.empty();
+        createdBefore = all ? Optional.of(LocalDate.of(2024, 12, 31)) : Optional.empty();
+        // tuesday 10:30
+        openAt = all ? Optional.of(WeekMinutes.MINUTES_PER_DAY + 10 * 60 + 30) : Optional.empty();
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.close();
+        mapping.close();
+    }
+}
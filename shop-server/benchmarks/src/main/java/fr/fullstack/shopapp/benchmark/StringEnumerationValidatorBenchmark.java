@@ -0,0 +1,43 @@
+package fr.fullstack.shopapp.benchmark;
+
+import fr.fullstack.shopapp.model.LocalizedProduct;
+import fr.fullstack.shopapp.validation.StringEnumeration;
+import fr.fullstack.shopapp.validation.StringEnumerationValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-XX:+UseG1GC"})
+public class StringEnumerationValidatorBenchmark {
+    private final StringEnumerationValidator validator = new StringEnumerationValidator();
+
+    // a valid locale, the other one, and an invalid one
+    @Param({"FR", "EN", "DE"})
+    private String value;
+
+    @Benchmark
+    public boolean isValid() {
+        return validator.isValid(value, null);
+    }
+
+    @Setup
+    public void setup() throws NoSuchFieldException {
+        // the constraint of LocalizedProduct.locale, as initialized by Hibernate Validator
+        validator.initialize(LocalizedProduct.class.getDeclaredField("locale").getAnnotation(StringEnumeration.class));
+    }
+}
@@ -0,0 +1,8 @@
+#!/bin/sh
+# Lance les tests de charge (Docker requis) ; le libellé du rapport est le commit courant.
+# Usage : ./run.sh [-Dloadtest.shops=100000 -Dloadtest.scenarios=search-shops,writes ...]
+set -e
+cd "$(dirname "$0")"
+
+LABEL=$(git rev-parse --short HEAD 2>/dev/null || echo local)
+mvn -q compile exec:exec@run -Dloadtest.label="$LABEL" "$@"
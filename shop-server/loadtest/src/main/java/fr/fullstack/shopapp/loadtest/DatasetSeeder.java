@@ -0,0 +1,122 @@
+package fr.fullstack.shopapp.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Fills the database with a synthetic catalog, generated by Postgres itself
+ * (generate_series) so that millions of rows are seeded in a few seconds.
+ * Shop i owns the products (i - 1) * productsPerShop + 1 to i * productsPerShop,
+ * each product has a FR and an EN name and one or two categories.
+ */
+public class DatasetSeeder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatasetSeeder.class);
+
+    // words of the generated names, also used as search texts by the scenarios
+    static final String[] SHOP_WORDS = {
+            "boulangerie", "fleuriste", "librairie", "epicerie", "fromagerie",
+            "boucherie", "pharmacie", "quincaillerie", "caviste", "primeur"
+    };
+
+    static final String[] PRODUCT_WORDS = {
+            "pain", "fromage", "livre", "vin", "fleur", "savon", "café", "thé", "chocolat", "miel"
+    };
+
+    private static final String[] PRODUCT_WORDS_EN = {
+            "bread", "cheese", "book", "wine", "flower", "soap", "coffee", "tea", "chocolate", "honey"
+    };
+
+    private final LoadTestSettings settings;
+
+    public DatasetSeeder(LoadTestSettings settings) {
+        this.settings = settings;
+    }
+
+    // moves every sequence after the seeded ids, once Hibernate created its own sequences
+    public static void resetSequences(Connection connection, long next) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("select setval(c.oid::regclass, " + next + ") from pg_class c "
+                    + "where c.relkind = 'S' and c.relnamespace = 'public'::regnamespace");
+        }
+    }
+
+    // first id which is free in every table
+    public long nextFreeId() {
+        return 2L * settings.getProducts() + 7L * settings.getShops() + 1000;
+    }
+
+    public void seed(Connection connection) throws SQLException {
+        int shops = settings.getShops();
+        int productsPerShop = settings.getProductsPerShop();
+        int products = settings.getProducts();
+        int categories = settings.getCategories();
+        String shopWords = sqlArray(SHOP_WORDS);
+        String productWords = sqlArray(PRODUCT_WORDS);
+        String productWordsEn = sqlArray(PRODUCT_WORDS_EN);
+
+        long start = System.nanoTime();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("insert into categories (id, name) "
+                    + "select i, 'Catégorie ' || i from generate_series(1, " + categories + ") i");
+
+            statement.execute("insert into shops (id, name, created_at, in_vacations) "
+                    + "select i, initcap((" + shopWords + ")[1 + i % 10]) || ' '"
+                    + " || (array['du centre', 'de la gare', 'du marché', 'des halles', 'du port'])[1 + i % 5]"
+                    + " || ' ' || i, date '2010-01-01' + i % 5000, i % 10 = 0"
+                    + " from generate_series(1, " + shops + ") i");
+
+            // open from monday to saturday, the opening time depends on the shop
+            statement.execute("insert into opening_hours (id, day, open_at, close_at, start_minute, end_minute) "
+                    + "select (s - 1) * 7 + d, d, time '08:00' + (s % 4) * interval '30 minutes',"
+                    + " time '17:00' + (s % 4) * interval '30 minutes',"
+                    + " (d - 1) * 1440 + 480 + (s % 4) * 30, (d - 1) * 1440 + 1020 + (s % 4) * 30"
+                    + " from generate_series(1, " + shops + ") s, generate_series(1, 6) d");
+            statement.execute("insert into shops_opening_hours (shop_id, opening_hours_id) "
+                    + "select s, (s - 1) * 7 + d from generate_series(1, " + shops + ") s, generate_series(1, 6) d");
+
+            statement.execute("insert into products (id, price_minor, shop_id) "
+                    + "select i, (i * 37) % 20000 + 50, 1 + (i - 1) / " + productsPerShop
+                    + " from generate_series(1, " + products + ") i");
+            statement.execute("insert into products_categories (product_id, category_id) "
+                    + "select i, 1 + i % " + categories + " from generate_series(1, " + products + ") i");
+            statement.execute("insert into products_categories (product_id, category_id) "
+                    + "select i, 1 + (i / 7) % " + categories + " from generate_series(1, " + products + ") i"
+                    + " where i % 2 = 0 and (i / 7) % " + categories + " <> i % " + categories);
+
+            statement.execute("insert into localized_product (id, locale, name, description) "
+                    + "select 2 * i - 1, 'FR', initcap((" + productWords + ")[1 + i % 10]) || ' ' || i,"
+                    + " 'Description du produit ' || i || ', ' || (" + productWords + ")[1 + (i / 10) % 10]"
+                    + " from generate_series(1, " + products + ") i");
+            statement.execute("insert into localized_product (id, locale, name, description) "
+                    + "select 2 * i, 'EN', initcap((" + productWordsEn + ")[1 + i % 10]) || ' ' || i,"
+                    + " 'Description of product ' || i || ', ' || (" + productWordsEn + ")[1 + (i / 10) % 10]"
+                    + " from generate_series(1, " + products + ") i");
+            statement.execute("insert into products_localized_product (product_id, localized_product_id) "
+                    + "select i, 2 * i - 1 from generate_series(1, " + products + ") i "
+                    + "union all select i, 2 * i from generate_series(1, " + products + ") i");
+
+            statement.execute("update shops s set nb_products = c.nb_products, nb_categories = c.nb_categories "
+                    + "from (select p.shop_id, count(distinct p.id) nb_products,"
+                    + " count(distinct pc.category_id) nb_categories"
+                    + " from products p left join products_categories pc on pc.product_id = p.id"
+                    + " group by p.shop_id) c where c.shop_id = s.id");
+            connection.commit();
+        }
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("vacuum analyze");
+        }
+
+        LOGGER.info("Seeded {} shops, {} products and {} categories in {} s",
+                shops, products, categories, (System.nanoTime() - start) / 1_000_000_000);
+    }
+
+    private static String sqlArray(String[] words) {
+        return "array['" + String.join("', '", words) + "']";
+    }
+}
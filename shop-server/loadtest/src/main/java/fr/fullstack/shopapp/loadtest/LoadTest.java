@@ -0,0 +1,136 @@
+package fr.fullstack.shopapp.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import fr.fullstack.shopapp.ShopAppApplication;
+import fr.fullstack.shopapp.dto.SearchIndexProgress;
+import fr.fullstack.shopapp.model.SearchIndexState;
+import fr.fullstack.shopapp.model.SearchIndexStatus;
+import fr.fullstack.shopapp.service.SearchIndexRebuildService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.elasticsearch.ElasticsearchContainer;
+import org.testcontainers.lifecycle.Startables;
+import org.testcontainers.utility.MountableFile;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Load test of the shop server: starts Postgres and Elasticsearch containers,
+ * seeds a synthetic dataset, boots ShopAppApplication on a random port once
+ * the indexes are built, runs the selected scenarios one after the other and
+ * writes a JSON report in the report directory.
+ */
+public class LoadTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadTest.class);
+
+    private static final String ELASTICSEARCH_IMAGE = "docker.elastic.co/elasticsearch/elasticsearch:7.17.25";
+
+    private static final String POSTGRES_IMAGE = "postgres:15";
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        Instant startedAt = Instant.now();
+
+        try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(POSTGRES_IMAGE);
+             ElasticsearchContainer elasticsearch = new ElasticsearchContainer(ELASTICSEARCH_IMAGE)) {
+            // same schema as docker compose, the missing sequences are created by Hibernate
+            postgres.withCopyFileToContainer(MountableFile.forHostPath(settings.getSchema()),
+                            "/docker-entrypoint-initdb.d/create_tables.sql")
+                    .withCommand("postgres", "-c", "max_connections=200");
+            elasticsearch.withEnv("ES_JAVA_OPTS", "-Xms1g -Xmx1g")
+                    .withEnv("xpack.security.enabled", "false");
+            Startables.deepStart(postgres, elasticsearch).join();
+
+            DatasetSeeder seeder = new DatasetSeeder(settings);
+            try (Connection connection = DriverManager.getConnection(
+                    postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())) {
+                seeder.seed(connection);
+            }
+
+            try (ConfigurableApplicationContext app = startApplication(postgres, elasticsearch)) {
+                try (Connection connection = app.getBean(DataSource.class).getConnection()) {
+                    DatasetSeeder.resetSequences(connection, seeder.nextFreeId());
+                }
+                awaitSearchIndexes(app.getBean(SearchIndexRebuildService.class));
+
+                URI baseUrl = URI.create("http://localhost:"
+                        + app.getEnvironment().getProperty("local.server.port"));
+                ScenarioRunner runner = new ScenarioRunner(settings);
+                List<ScenarioResult> results = new ArrayList<ScenarioResult>();
+                for (Scenario scenario : Scenarios.all(baseUrl, settings)) {
+                    if (settings.runs(scenario.getName())) {
+                        ScenarioResult result = runner.run(scenario);
+                        LOGGER.info("Scenario {}: {} req/s, {} items/s, p50 {} ms, p99 {} ms, {} errors",
+                                result.getName(), Math.round(result.getThroughput()),
+                                Math.round(result.getItemThroughput()), result.getP50(), result.getP99(),
+                                result.getErrors());
+                        results.add(result);
+                    }
+                }
+
+                writeReport(settings, new LoadTestReport(settings, startedAt, results));
+            }
+        }
+    }
+
+    // the rebuild is started by ElasticsearchIndexInitializer when the application is ready
+    private static void awaitSearchIndexes(SearchIndexRebuildService rebuildService) throws InterruptedException {
+        LOGGER.info("Waiting for the search indexes");
+        SearchIndexProgress progress = rebuildService.getProgress();
+        while (progress.getRunning()) {
+            Thread.sleep(1000);
+            progress = rebuildService.getProgress();
+        }
+
+        for (SearchIndexState index : progress.getIndexes()) {
+            if (index.getStatus() != SearchIndexStatus.READY) {
+                throw new IllegalStateException("Index " + index.getEntityName() + " not built: "
+                        + index.getLastError());
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(
+            PostgreSQLContainer<?> postgres, ElasticsearchContainer elasticsearch) {
+        String url = postgres.getJdbcUrl();
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("server.port", 0);
+        properties.put("spring.datasource.url", url + (url.contains("?") ? "&" : "?") + "reWriteBatchedInserts=true");
+        properties.put("spring.datasource.username", postgres.getUsername());
+        properties.put("spring.datasource.password", postgres.getPassword());
+        properties.put("ES_URL", elasticsearch.getHttpHostAddress());
+        properties.put("shop.search.rebuild.on-start", "always");
+
+        return new SpringApplicationBuilder(ShopAppApplication.class).properties(properties).run();
+    }
+
+    private static void writeReport(LoadTestSettings settings, LoadTestReport report) throws Exception {
+        Files.createDirectories(settings.getReportDir());
+        String date = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC)
+                .format(report.getStartedAt());
+        Path file = settings.getReportDir().resolve("loadtest-" + settings.getLabel() + "-" + date + ".json");
+
+        ObjectMapper mapper = new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .enable(SerializationFeature.INDENT_OUTPUT);
+        mapper.writeValue(file.toFile(), report);
+        LOGGER.info("Report written to {}", file);
+    }
+}
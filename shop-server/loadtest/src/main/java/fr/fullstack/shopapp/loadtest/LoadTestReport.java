@@ -0,0 +1,89 @@
+package fr.fullstack.shopapp.loadtest;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Report of a load test run, written as JSON and compared by ReportDiff.
+ */
+public class LoadTestReport {
+    private final int batchSize;
+
+    private final int categories;
+
+    private final int concurrency;
+
+    private final long durationSeconds;
+
+    private final String javaVersion;
+
+    private final String label;
+
+    private final int products;
+
+    private final List<ScenarioResult> scenarios;
+
+    private final int shops;
+
+    private final Instant startedAt;
+
+    private final long warmupSeconds;
+
+    public LoadTestReport(LoadTestSettings settings, Instant startedAt, List<ScenarioResult> scenarios) {
+        this.batchSize = settings.getBatchSize();
+        this.categories = settings.getCategories();
+        this.concurrency = settings.getConcurrency();
+        this.durationSeconds = settings.getDuration().toSeconds();
+        this.javaVersion = System.getProperty("java.version");
+        this.label = settings.getLabel();
+        this.products = settings.getProducts();
+        this.scenarios = scenarios;
+        this.shops = settings.getShops();
+        this.startedAt = startedAt;
+        this.warmupSeconds = settings.getWarmup().toSeconds();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getCategories() {
+        return categories;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public String getJavaVersion() {
+        return javaVersion;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getProducts() {
+        return products;
+    }
+
+    public List<ScenarioResult> getScenarios() {
+        return scenarios;
+    }
+
+    public int getShops() {
+        return shops;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public long getWarmupSeconds() {
+        return warmupSeconds;
+    }
+}
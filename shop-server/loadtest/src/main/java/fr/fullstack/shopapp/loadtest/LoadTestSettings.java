@@ -0,0 +1,102 @@
+package fr.fullstack.shopapp.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Settings of a load test run, read from the loadtest.* system properties.
+ */
+public class LoadTestSettings {
+    private final int batchSize;
+
+    private final int categories;
+
+    private final int concurrency;
+
+    private final Duration duration;
+
+    private final String label;
+
+    private final int productsPerShop;
+
+    private final Path reportDir;
+
+    private final Set<String> scenarios;
+
+    private final Path schema;
+
+    private final int shops;
+
+    private final Duration warmup;
+
+    private LoadTestSettings() {
+        batchSize = Integer.getInteger("loadtest.batch-size", 500);
+        categories = Integer.getInteger("loadtest.categories", 50);
+        concurrency = Integer.getInteger("loadtest.concurrency", 32);
+        duration = Duration.ofSeconds(Integer.getInteger("loadtest.duration", 60));
+        label = System.getProperty("loadtest.label", "local");
+        productsPerShop = Integer.getInteger("loadtest.products-per-shop", 25);
+        reportDir = Path.of(System.getProperty("loadtest.report-dir", "results"));
+        scenarios = Arrays.stream(System.getProperty("loadtest.scenarios", "all").split(","))
+                .map(String::trim)
+                .collect(Collectors.toSet());
+        schema = Path.of(System.getProperty("loadtest.schema", "../sql/create_tables.sql"));
+        shops = Integer.getInteger("loadtest.shops", 20000);
+        warmup = Duration.ofSeconds(Integer.getInteger("loadtest.warmup", 30));
+    }
+
+    public static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getCategories() {
+        return categories;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getProducts() {
+        return shops * productsPerShop;
+    }
+
+    public int getProductsPerShop() {
+        return productsPerShop;
+    }
+
+    public Path getReportDir() {
+        return reportDir;
+    }
+
+    public Path getSchema() {
+        return schema;
+    }
+
+    public int getShops() {
+        return shops;
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public boolean runs(String scenario) {
+        return scenarios.contains("all") || scenarios.contains(scenario);
+    }
+}
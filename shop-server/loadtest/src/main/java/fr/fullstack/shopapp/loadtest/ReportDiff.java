@@ -0,0 +1,60 @@
+package fr.fullstack.shopapp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two load test reports, scenario by scenario:
+ * ReportDiff baseline.json candidate.json
+ */
+public class ReportDiff {
+    private static final String[] METRICS = {"throughput", "itemThroughput", "p50", "p90", "p99", "p999", "max"};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ReportDiff <baseline.json> <candidate.json>");
+            System.exit(2);
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode baseline = mapper.readTree(new File(args[0]));
+        JsonNode candidate = mapper.readTree(new File(args[1]));
+        System.out.printf("%s (%s) -> %s (%s)%n%n", baseline.path("label").asText(), args[0],
+                candidate.path("label").asText(), args[1]);
+        if (baseline.path("products").asLong() != candidate.path("products").asLong()
+                || baseline.path("concurrency").asInt() != candidate.path("concurrency").asInt()
+                || baseline.path("batchSize").asInt() != candidate.path("batchSize").asInt()) {
+            System.out.println("Attention : jeu de données ou concurrence différents, résultats non comparables\n");
+        }
+
+        Map<String, JsonNode> baselineScenarios = byName(baseline);
+        System.out.printf("%-18s %-14s %12s %12s %9s%n", "scenario", "metric", "baseline", "candidate", "change");
+        for (Map.Entry<String, JsonNode> entry : byName(candidate).entrySet()) {
+            JsonNode before = baselineScenarios.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            for (String metric : METRICS) {
+                double a = before.path(metric).asDouble();
+                double b = entry.getValue().path(metric).asDouble();
+                System.out.printf("%-18s %-14s %12.2f %12.2f %8.1f%%%n",
+                        entry.getKey(), metric, a, b, a == 0 ? 0 : (b - a) * 100 / a);
+            }
+            System.out.printf("%-18s %-14s %12d %12d%n", entry.getKey(), "errors",
+                    before.path("errors").asLong(), entry.getValue().path("errors").asLong());
+        }
+    }
+
+    private static Map<String, JsonNode> byName(JsonNode report) {
+        Map<String, JsonNode> scenarios = new LinkedHashMap<String, JsonNode>();
+        for (JsonNode scenario : report.path("scenarios")) {
+            scenarios.put(scenario.path("name").asText(), scenario);
+        }
+        return scenarios;
+    }
+}
@@ -0,0 +1,39 @@
+package fr.fullstack.shopapp.loadtest;
+
+import java.net.http.HttpRequest;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * A named request mix: every call of nextRequest returns the next request
+ * a virtual user sends. A request may carry several items (batch writes).
+ */
+public class Scenario {
+    private final int itemsPerRequest;
+
+    private final String name;
+
+    private final Function<Random, HttpRequest> requests;
+
+    public Scenario(String name, Function<Random, HttpRequest> requests) {
+        this(name, 1, requests);
+    }
+
+    public Scenario(String name, int itemsPerRequest, Function<Random, HttpRequest> requests) {
+        this.name = name;
+        this.itemsPerRequest = itemsPerRequest;
+        this.requests = requests;
+    }
+
+    public int getItemsPerRequest() {
+        return itemsPerRequest;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public HttpRequest nextRequest(Random random) {
+        return requests.apply(random);
+    }
+}
@@ -0,0 +1,100 @@
+package fr.fullstack.shopapp.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Throughput (requests and items per second) and latency percentiles
+ * (in milliseconds) of a scenario.
+ */
+public class ScenarioResult {
+    private final long errors;
+
+    private final double itemThroughput;
+
+    private final int itemsPerRequest;
+
+    private final double max;
+
+    private final double mean;
+
+    private final String name;
+
+    private final double p50;
+
+    private final double p90;
+
+    private final double p99;
+
+    private final double p999;
+
+    private final long requests;
+
+    private final double throughput;
+
+    public ScenarioResult(String name, int itemsPerRequest, Histogram latencies, long errors, double seconds) {
+        this.name = name;
+        this.itemsPerRequest = itemsPerRequest;
+        this.errors = errors;
+        this.requests = latencies.getTotalCount();
+        this.throughput = requests / seconds;
+        this.itemThroughput = throughput * itemsPerRequest;
+        this.mean = millis(latencies.getMean());
+        this.p50 = millis(latencies.getValueAtPercentile(50));
+        this.p90 = millis(latencies.getValueAtPercentile(90));
+        this.p99 = millis(latencies.getValueAtPercentile(99));
+        this.p999 = millis(latencies.getValueAtPercentile(99.9));
+        this.max = millis(latencies.getMaxValue());
+    }
+
+    private static double millis(double micros) {
+        return Math.round(micros) / 1000.0;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public double getItemThroughput() {
+        return itemThroughput;
+    }
+
+    public int getItemsPerRequest() {
+        return itemsPerRequest;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public double getP90() {
+        return p90;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    public double getP999() {
+        return p999;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public double getThroughput() {
+        return throughput;
+    }
+}
@@ -0,0 +1,85 @@
+package fr.fullstack.shopapp.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a scenario with a fixed number of virtual users (closed model): each user
+ * sends its next request as soon as the previous response is read. The latencies
+ * of the warmup are discarded.
+ */
+public class ScenarioRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScenarioRunner.class);
+
+    // latencies in microseconds, up to 1 minute, 3 significant digits
+    private static final long MAX_LATENCY = 60_000_000;
+
+    private final HttpClient client;
+
+    private final LoadTestSettings settings;
+
+    public ScenarioRunner(LoadTestSettings settings) {
+        this.settings = settings;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public ScenarioResult run(Scenario scenario) {
+        Recorder recorder = new Recorder(MAX_LATENCY, 3);
+        LongAdder errors = new LongAdder();
+
+        LOGGER.info("Scenario {}: warmup for {} s", scenario.getName(), settings.getWarmup().toSeconds());
+        runUsers(scenario, settings.getWarmup(), recorder, errors);
+        recorder.reset();
+        errors.reset();
+
+        LOGGER.info("Scenario {}: measure for {} s", scenario.getName(), settings.getDuration().toSeconds());
+        long start = System.nanoTime();
+        runUsers(scenario, settings.getDuration(), recorder, errors);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Histogram latencies = recorder.getIntervalHistogram();
+        return new ScenarioResult(scenario.getName(), scenario.getItemsPerRequest(), latencies, errors.sum(),
+                seconds);
+    }
+
+    private void runUsers(Scenario scenario, Duration duration, Recorder recorder, LongAdder errors) {
+        long end = System.nanoTime() + duration.toNanos();
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < settings.getConcurrency(); i++) {
+                users.submit(() -> {
+                    Random random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < end) {
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(
+                                    scenario.nextRequest(random), HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 400) {
+                                errors.increment();
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        } catch (Exception e) {
+                            errors.increment();
+                        }
+                        recorder.recordValue(Math.min((System.nanoTime() - sent) / 1000, MAX_LATENCY));
+                    }
+                });
+            }
+        }
+    }
+}
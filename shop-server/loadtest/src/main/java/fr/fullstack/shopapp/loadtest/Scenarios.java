@@ -0,0 +1,115 @@
+package fr.fullstack.shopapp.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Scenarios of the load test, on the seeded dataset (see DatasetSeeder).
+ */
+public class Scenarios {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private static final String[] SHOP_SORTS = {"name", "createdAt", "nbProducts"};
+
+    private Scenarios() {
+    }
+
+    public static List<Scenario> all(URI baseUrl, LoadTestSettings settings) {
+        int shops = settings.getShops();
+        int categories = settings.getCategories();
+        int batchSize = settings.getBatchSize();
+
+        return List.of(
+                // shops list sorted on a column, on the first hundred pages
+                new Scenario("shops-sorted", random -> get(baseUrl, "/api/v1/shops?size=20&page="
+                        + random.nextInt(100) + "&sortBy=" + pick(random, SHOP_SORTS))),
+
+                // shops list filtered on the vacations and the creation date
+                new Scenario("shops-filtered", random -> get(baseUrl, "/api/v1/shops?size=20&page="
+                        + random.nextInt(20) + "&inVacations=" + random.nextBoolean()
+                        + "&createdAfter=" + (2010 + random.nextInt(12)) + "-01-01")),
+
+                // shops open at a random time of the week (2024-01-01 is a monday)
+                new Scenario("shops-open-at", random -> get(baseUrl, "/api/v1/shops?size=20&openAt="
+                        + String.format("2024-01-%02dT%02d:%02d",
+                                1 + random.nextInt(7), random.nextInt(24), random.nextInt(60)))),
+
+                // products of a shop, half of the time also filtered on a category
+                new Scenario("products-filtered", random -> {
+                    String path = "/api/v1/products?size=20&shopId=" + (1 + random.nextInt(shops));
+                    if (random.nextBoolean()) {
+                        path += "&categoryId=" + (1 + random.nextInt(categories));
+                    }
+                    return get(baseUrl, path);
+                }),
+
+                // products of a shop in a price range, by ascending or descending price
+                new Scenario("products-by-price", random -> {
+                    int minPrice = random.nextInt(150);
+                    return get(baseUrl, "/api/v1/products?size=20&shopId=" + (1 + random.nextInt(shops))
+                            + "&minPrice=" + minPrice + "&maxPrice=" + (minPrice + 50)
+                            + "&sortBy=" + (random.nextBoolean() ? "price" : "priceDesc"));
+                }),
+
+                new Scenario("search-shops", random -> get(baseUrl, "/api/v1/shops/search?size=20&searchText="
+                        + encode(pick(random, DatasetSeeder.SHOP_WORDS))
+                        + (random.nextBoolean() ? "&inVacations=false" : ""))),
+
+                // products full text search, with a price range and the facets
+                new Scenario("search-products", random -> {
+                    int minPrice = random.nextInt(150);
+                    return get(baseUrl, "/api/v1/products/search?size=20&searchText="
+                            + encode(pick(random, DatasetSeeder.PRODUCT_WORDS))
+                            + "&minPrice=" + minPrice + "&maxPrice=" + (minPrice + 50));
+                }),
+
+                // product creation in a random shop
+                new Scenario("writes", random -> post(baseUrl, "/api/v1/products",
+                        product(random, shops, categories))),
+
+                // same products created by batches: compare its items/s with the writes scenario
+                new Scenario("writes-batch", batchSize, random -> {
+                    StringBuilder body = new StringBuilder("[");
+                    for (int i = 0; i < batchSize; i++) {
+                        body.append(i == 0 ? "" : ", ").append(product(random, shops, categories));
+                    }
+                    return post(baseUrl, "/api/v1/products/batch", body.append("]").toString());
+                })
+        );
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static HttpRequest get(URI baseUrl, String path) {
+        return HttpRequest.newBuilder(baseUrl.resolve(path)).timeout(TIMEOUT).GET().build();
+    }
+
+    private static HttpRequest post(URI baseUrl, String path, String body) {
+        return HttpRequest.newBuilder(baseUrl.resolve(path))
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String product(Random random, int shops, int categories) {
+        int id = random.nextInt(1_000_000);
+        return "{\"price\": " + (1 + random.nextInt(200))
+                + ", \"shop\": {\"id\": " + (1 + random.nextInt(shops)) + "}"
+                + ", \"categories\": [{\"id\": " + (1 + random.nextInt(categories)) + "}]"
+                + ", \"localizedProducts\": ["
+                + "{\"locale\": \"FR\", \"name\": \"Produit charge " + id + "\", \"description\": \"Test\"}, "
+                + "{\"locale\": \"EN\", \"name\": \"Load product " + id + "\", \"description\": \"Test\"}]}";
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
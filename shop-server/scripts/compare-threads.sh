@@ -0,0 +1,61 @@
+#!/usr/bin/env bash
+# Compares the request concurrency scaling of the platform threads (Tomcat pool)
+# and of the virtual threads (VIRTUAL_THREADS=true).
+#
+# Needs: the packaged jar (mvn package), Postgres and Elasticsearch running
+# (docker compose up db elasticsearch) and the "hey" load generator
+# (https://github.com/rakyll/hey) in the PATH.
+#
+# Usage: scripts/compare-threads.sh [duration per step, default 30s]
+# Writes one CSV line per mode, endpoint and concurrency in results/threads-<date>.csv.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+DURATION=${1:-30s}
+JAR=target/shop-app-0.0.1-SNAPSHOT-exec.jar
+BASE_URL=http://localhost:8080
+CONCURRENCY_LEVELS="50 100 200 400 800"
+ENDPOINTS=(
+    "/api/v1/shops?page=0&size=20"
+    "/api/v1/products?page=0&size=50"
+    "/api/v1/shops/search?searchText=boutique&page=0&size=20"
+)
+RESULT=results/threads-$(date +%Y%m%d-%H%M%S).csv
+
+command -v hey >/dev/null || { echo "hey not found in the PATH" >&2; exit 1; }
+[ -f "$JAR" ] || { echo "$JAR not found, run mvn package first" >&2; exit 1; }
+mkdir -p results
+echo "mode,endpoint,concurrency,requests_per_second,p50_seconds,p99_seconds,errors" > "$RESULT"
+
+for MODE in platform virtual; do
+    VIRTUAL=false
+    [ "$MODE" = virtual ] && VIRTUAL=true
+
+    VIRTUAL_THREADS=$VIRTUAL java ${JAVA_OPTS:-} -jar "$JAR" > "results/server-$MODE.log" 2>&1 &
+    SERVER_PID=$!
+    trap 'kill $SERVER_PID 2>/dev/null || true' EXIT
+    until curl -sf "$BASE_URL/actuator/health" > /dev/null; do
+        kill -0 $SERVER_PID 2>/dev/null || { echo "server failed, see results/server-$MODE.log" >&2; exit 1; }
+        sleep 2
+    done
+
+    for ENDPOINT in "${ENDPOINTS[@]}"; do
+        # warm-up: JIT, connection pool, second-level cache
+        hey -z 10s -c 50 "$BASE_URL$ENDPOINT" > /dev/null
+        for CONCURRENCY in $CONCURRENCY_LEVELS; do
+            OUTPUT=$(hey -z "$DURATION" -c "$CONCURRENCY" "$BASE_URL$ENDPOINT")
+            RPS=$(echo "$OUTPUT" | awk '/Requests\/sec/ {print $2}')
+            P50=$(echo "$OUTPUT" | awk '/ 50% in/ {print $3}')
+            P99=$(echo "$OUTPUT" | awk '/ 99% in/ {print $3}')
+            ERRORS=$(echo "$OUTPUT" | awk '/^\s*\[[0-9]+\]/ && $1 != "[200]" {sum += $2} END {print sum + 0}')
+            echo "$MODE,$ENDPOINT,$CONCURRENCY,$RPS,$P50,$P99,$ERRORS" | tee -a "$RESULT"
+        done
+    done
+
+    kill $SERVER_PID
+    wait $SERVER_PID 2>/dev/null || true
+    trap - EXIT
+done
+
+echo "Results: $RESULT"
@@ -0,0 +1,78 @@
+#!/usr/bin/env bash
+# Measures the time to first request of the server: from the launch of the JVM to the
+# first successful catalog read, for the plain jar, the extracted jar with a CDS archive
+# and, when the jar was built with -Pfast-start, the AOT bean definitions with the archive.
+#
+# Needs: the packaged jar (mvn package or mvn -Pfast-start package), Postgres and
+# Elasticsearch running (docker compose up db elasticsearch).
+#
+# Usage: scripts/startup-time.sh [runs per mode, default 5]
+# Writes one CSV line per mode and run in results/startup-<date>.csv, then the median per mode.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+RUNS=${1:-5}
+JAR=target/shop-app-0.0.1-SNAPSHOT-exec.jar
+EXTRACTED=target/fast-start
+BASE_URL=http://localhost:8080
+FIRST_REQUEST="$BASE_URL/api/v1/shops?page=0&size=1"
+RESULT=results/startup-$(date +%Y%m%d-%H%M%S).csv
+
+[ -f "$JAR" ] || { echo "$JAR not found, run mvn package first" >&2; exit 1; }
+mkdir -p results
+export SPRING_PROFILES_ACTIVE=prod
+
+# same layout and training run as the Dockerfile
+rm -rf "$EXTRACTED"
+java -Djarmode=tools -jar "$JAR" extract --destination "$EXTRACTED" > /dev/null
+APP_JAR="$EXTRACTED/$(basename "$JAR")"
+MODES="jar cds"
+AOT_OPTIONS=""
+if jar tf "$APP_JAR" | grep -q '__ApplicationContextInitializer'; then
+    MODES="$MODES aot-cds"
+    AOT_OPTIONS="-Dspring.aot.enabled=true"
+fi
+java -XX:ArchiveClassesAtExit="$EXTRACTED/cds.jsa" -Dspring.context.exit=onRefresh \
+    -Dspring.profiles.active=prod,training -jar "$APP_JAR" > results/startup-training.log 2>&1
+if [ -n "$AOT_OPTIONS" ]; then
+    java $AOT_OPTIONS -XX:ArchiveClassesAtExit="$EXTRACTED/aot-cds.jsa" -Dspring.context.exit=onRefresh \
+        -Dspring.profiles.active=prod,training -jar "$APP_JAR" >> results/startup-training.log 2>&1
+fi
+
+echo "mode,run,time_to_first_request_ms,started_in_seconds" > "$RESULT"
+
+for MODE in $MODES; do
+    case $MODE in
+        jar) COMMAND=(java ${JAVA_OPTS:-} -jar "$JAR") ;;
+        cds) COMMAND=(java -XX:SharedArchiveFile="$EXTRACTED/cds.jsa" ${JAVA_OPTS:-} -jar "$APP_JAR") ;;
+        aot-cds) COMMAND=(java $AOT_OPTIONS -XX:SharedArchiveFile="$EXTRACTED/aot-cds.jsa" ${JAVA_OPTS:-}
+                          -jar "$APP_JAR") ;;
+    esac
+
+    for RUN in $(seq 1 "$RUNS"); do
+        START=$(date +%s%N)
+        "${COMMAND[@]}" > "results/server-startup-$MODE.log" 2>&1 &
+        SERVER_PID=$!
+        trap 'kill $SERVER_PID 2>/dev/null || true' EXIT
+        until curl -sf -o /dev/null "$FIRST_REQUEST"; do
+            kill -0 $SERVER_PID 2>/dev/null || { echo "server failed, see results/server-startup-$MODE.log" >&2; exit 1; }
+            sleep 0.05
+        done
+        ELAPSED=$(( ($(date +%s%N) - START) / 1000000 ))
+        STARTED=$(grep -o 'Started ShopAppApplication in [0-9.]*' "results/server-startup-$MODE.log" | awk '{print $4}')
+        echo "$MODE,$RUN,$ELAPSED,$STARTED" | tee -a "$RESULT"
+
+        kill $SERVER_PID
+        wait $SERVER_PID 2>/dev/null || true
+        trap - EXIT
+    done
+done
+
+echo "Median time to first request (ms):"
+for MODE in $MODES; do
+    MEDIAN=$(awk -F, -v mode="$MODE" '$1 == mode {print $3}' "$RESULT" | sort -n \
+        | awk '{values[NR] = $1} END {print values[int((NR + 1) / 2)]}')
+    echo "  $MODE: $MEDIAN"
+done
+echo "Results: $RESULT"
@@ -1,6 +1,39 @@
+create sequence product_seq start with 1 increment by 50;
+create sequence localized_product_seq start with 1 increment by 50;
+
 create table categories (
     id int8 not null,
     name varchar(255) not null,
+    version timestamp(6) with time zone default current_timestamp not null,
+    deleted_at timestamp(6) with time zone,
+    primary key (id)
+);
+
+create table import_jobs (
+    id int8 not null,
+    committed_rows int8 not null,
+    completed_at timestamp(6) with time zone,
+    format varchar(255) not null,
+    imported_rows int8 not null,
+    last_error varchar(1000),
+    rejected_rows int8 not null,
+    rows_per_second float8 not null,
+    source varchar(255),
+    started_at timestamp(6) with time zone not null,
+    status varchar(255) not null,
+    target varchar(255) not null,
+    primary key (id)
+);
+
+create table indexing_outbox (
+    id bigserial not null,
+    attempts int4 not null,
+    created_at timestamp(6) with time zone not null,
+    entity_id int8 not null,
+    entity_type varchar(255) not null,
+    last_error varchar(1000),
+    next_attempt_at timestamp(6) with time zone,
+    type varchar(255) not null,
     primary key (id)
 );
 
@@ -16,14 +49,17 @@ create table opening_hours (
     id int8 not null,
     close_at time not null,
     day int4 not null check (day>=1 AND day<=7),
+    end_minute int4,
     open_at time not null,
+    start_minute int4,
     primary key (id)
 );
 
 create table products (
     id int8 not null,
-    price float4 not null,
+    price_minor int8 not null,
     shop_id int8,
+    version timestamp(6) with time zone default current_timestamp not null,
     primary key (id)
 );
 
@@ -37,11 +73,29 @@ create table products_localized_product (
     localized_product_id int8 not null
 );
 
+create table search_index_state (
+    entity_name varchar(255) not null,
+    build_version int4,
+    checkpoint_id int8 not null,
+    completed_at timestamp(6) with time zone,
+    indexed_count int8 not null,
+    last_error varchar(1000),
+    started_at timestamp(6) with time zone,
+    status varchar(255) not null,
+    target_index varchar(255),
+    total_count int8 not null,
+    primary key (entity_name)
+);
+
 create table shops (
     id int8 not null,
     created_at date not null,
     in_vacations boolean not null,
     name varchar(255) not null,
+    nb_products int8 default 0 not null,
+    nb_categories int8 default 0 not null,
+    version timestamp(6) with time zone default current_timestamp not null,
+    deleted_at timestamp(6) with time zone,
     primary key (id)
 );
 
@@ -61,9 +115,22 @@ create table translation (
 create index idx_shops_name on shops(name);
 create index idx_shop_in_vacations on shops(in_vacations);
 create index idx_shop_created_at on shops(created_at);
+create index idx_shop_nb_products on shops(nb_products desc, id);
+create index idx_shop_name_id on shops(name, id);
+create index idx_shop_created_at_id on shops(created_at, id);
+create index idx_product_shop_id_id on products(shop_id, id);
+create index idx_product_shop_price_id on products(shop_id, price_minor, id);
+create index idx_product_price_id on products(price_minor, id);
+create index idx_shop_version on shops(version);
+create index idx_product_version on products(version);
 create index idx_products_categories_product_id on products_categories(product_id);
 create index idx_products_categories_category_id on products_categories(category_id);
 create index idx_categories_name on categories(name);
+create index idx_indexing_outbox_attempts on indexing_outbox(attempts, id);
+create index idx_opening_hours_week_minutes on opening_hours(start_minute, end_minute);
+create index idx_shops_opening_hours_shop_id on shops_opening_hours(shop_id);
+create index idx_shops_deleted on shops(id) where deleted_at is not null;
+create index idx_categories_deleted on categories(id) where deleted_at is not null;
 
 alter table products_localized_product
 add constraint UK_n8q0vltkv2dgjclj2aqn26l03 unique(localized_product_id);
@@ -0,0 +1,27 @@
+package fr.fullstack.shopapp.config;
+
+import fr.fullstack.shopapp.service.AnalyticsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+@Component
+public class AnalyticsViewsInitializer implements ApplicationListener<ApplicationReadyEvent> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnalyticsViewsInitializer.class);
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        // after the schema update: the views read the tables created by Hibernate
+        try {
+            analyticsService.createViews();
+        } catch (RuntimeException e) {
+            LOGGER.error("Analytics views could not be created: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package fr.fullstack.shopapp.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaVendorAdapter;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.sql.DataSource;
+
+/**
+ * Two connection pools: the primary one (spring.datasource.*) and, when
+ * shop.datasource.replica.url is set, one on a read replica for the read-only
+ * transactions (see ReplicaRoutingDataSource). Each pool has its hikaricp.* metrics,
+ * tagged with its name. The JPA dialect keeps the rows read from the replica out of the
+ * second-level cache (ReplicaAwareJpaDialect).
+ *
+ * The replica pool is not a conditional bean: the AOT processing (fast-start profile)
+ * evaluates the conditions at build time, the replica url is only known at runtime.
+ */
+@Configuration
+public class DataSourceConfig implements DisposableBean {
+    private HikariDataSource replica;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(ReplicaRoutingDataSource.PRIMARY);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(
+            @Qualifier("primaryDataSource") DataSource primary,
+            DataSourceProperties properties,
+            Environment environment,
+            MeterRegistry registry
+    ) {
+        String url = environment.getProperty("shop.datasource.replica.url", "");
+        if (url.isBlank()) {
+            return new LazyConnectionDataSourceProxy(primary);
+        }
+        replica = replicaDataSource(properties, environment, url, registry);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replica, registry);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    // same settings as the adapter of Spring Boot, with the dialect aware of the replica
+    @Bean
+    public JpaVendorAdapter jpaVendorAdapter(JpaProperties properties, Environment environment) {
+        HibernateJpaDialect dialect = new ReplicaAwareJpaDialect(
+                !environment.getProperty("shop.datasource.replica.url", "").isBlank());
+        HibernateJpaVendorAdapter adapter = new HibernateJpaVendorAdapter() {
+            @Override
+            public HibernateJpaDialect getJpaDialect() {
+                return dialect;
+            }
+        };
+        adapter.setShowSql(properties.isShowSql());
+        if (properties.getDatabase() != null) {
+            adapter.setDatabase(properties.getDatabase());
+        }
+        if (properties.getDatabasePlatform() != null) {
+            adapter.setDatabasePlatform(properties.getDatabasePlatform());
+        }
+        adapter.setGenerateDdl(properties.isGenerateDdl());
+        return adapter;
+    }
+
+    @Override
+    public void destroy() {
+        if (replica != null) {
+            replica.close();
+        }
+    }
+
+    // same user as the primary by default, the pool settings are shop.datasource.replica.hikari.*
+    private static HikariDataSource replicaDataSource(
+            DataSourceProperties properties, Environment environment, String url, MeterRegistry registry
+    ) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                .url(url)
+                .username(environment.getProperty("shop.datasource.replica.username", properties.determineUsername()))
+                .password(environment.getProperty("shop.datasource.replica.password", properties.determinePassword()))
+                .build();
+        Binder.get(environment).bind("shop.datasource.replica.hikari", Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(ReplicaRoutingDataSource.REPLICA);
+        dataSource.setReadOnly(true);
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        return dataSource;
+    }
+}
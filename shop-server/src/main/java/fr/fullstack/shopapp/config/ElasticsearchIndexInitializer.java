@@ -1,7 +1,6 @@
 package fr.fullstack.shopapp.config;
 
-import fr.fullstack.shopapp.service.ElasticsearchService;
-import jakarta.transaction.Transactional;
+import fr.fullstack.shopapp.service.SearchIndexRebuildService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationListener;
@@ -11,16 +10,11 @@ import org.springframework.stereotype.Component;
 public class ElasticsearchIndexInitializer implements ApplicationListener<ApplicationReadyEvent> {
 
     @Autowired
-    private ElasticsearchService elasticsearchService;
+    private SearchIndexRebuildService searchIndexRebuildService;
 
     @Override
-    @Transactional
     public void onApplicationEvent(ApplicationReadyEvent event) {
-        try {
-            elasticsearchService.reindexAll();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Failed to initialize Elasticsearch index", e);
-        }
+        // runs in the background: the application is ready while the indexes are checked or rebuilt
+        searchIndexRebuildService.startOnBoot();
     }
-}
\ No newline at end of file
+}
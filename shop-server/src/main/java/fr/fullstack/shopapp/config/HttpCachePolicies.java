@@ -0,0 +1,103 @@
+package fr.fullstack.shopapp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Cache-Control of the catalog reads, and the conditional GETs on their ETags (see ETags).
+ * The max-ages are in seconds: during max-age the clients use their copy, after it they
+ * revalidate it with If-None-Match. The shared max-age applies to the CDN.
+ */
+@Component
+public class HttpCachePolicies {
+    @Value("${shop.http-cache.entity-max-age:0}")
+    private long entityMaxAge;
+
+    @Value("${shop.http-cache.list-max-age:0}")
+    private long listMaxAge;
+
+    @Value("${shop.http-cache.category-max-age:300}")
+    private long categoryMaxAge;
+
+    @Value("${shop.http-cache.shared-max-age:0}")
+    private long sharedMaxAge;
+
+    // categories are almost never modified
+    public CacheControl categories() {
+        return policy(categoryMaxAge);
+    }
+
+    public CacheControl entity() {
+        return policy(entityMaxAge);
+    }
+
+    public CacheControl list() {
+        return policy(listMaxAge);
+    }
+
+    /**
+     * Answers a GET with its ETag, computed before the body: when it matches the If-None-Match
+     * of the request, the answer is a 304 and the body is never loaded. Without ETag (unknown
+     * entity), the body is loaded and reports the error.
+     */
+    public <T, E extends Exception> ResponseEntity<T> conditional(
+            WebRequest request, Optional<String> etag, CacheControl cacheControl, Body<T, E> body
+    ) throws E {
+        return conditional(request, etag, cacheControl, body, body, loaded -> etag.get());
+    }
+
+    /**
+     * Answers a GET of an entity, whose ETag is read on the primary before the body, as above.
+     * The body comes from the second-level cache of this instance or from the replica, which may
+     * still give the entity before a write made through another instance: its ETag (etagOf) is
+     * then not the one read, and it is loaded again with reload, from the primary. The answer
+     * carries the ETag of the entity it serializes, never a newer one.
+     */
+    public <T, E extends Exception> ResponseEntity<T> conditional(
+            WebRequest request, Optional<String> etag, CacheControl cacheControl,
+            Body<T, E> body, Body<T, E> reload, Function<T, String> etagOf
+    ) throws E {
+        if (etag.isEmpty()) {
+            return ResponseEntity.ok(body.load());
+        }
+        if (notModified(request, etag.get())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag.get()).cacheControl(cacheControl).build();
+        }
+        T loaded = body.load();
+        if (!etag.get().equals(etagOf.apply(loaded))) {
+            loaded = reload.load();
+        }
+        // the ETag header is written by Spring, from the one of the answer
+        return ResponseEntity.ok().eTag(etagOf.apply(loaded)).cacheControl(cacheControl).body(loaded);
+    }
+
+    // compares with the If-None-Match of the request, without writing the ETag in the response
+    private static boolean notModified(WebRequest request, String etag) {
+        HttpServletRequest servletRequest = ((NativeWebRequest) request).getNativeRequest(HttpServletRequest.class);
+        return new ServletWebRequest(servletRequest).checkNotModified(etag);
+    }
+
+    private CacheControl policy(long maxAge) {
+        return CacheControl.maxAge(Duration.ofSeconds(maxAge))
+                .sMaxAge(Duration.ofSeconds(sharedMaxAge))
+                .mustRevalidate()
+                .cachePublic();
+    }
+
+    // the body of an answer, throwing the exceptions of the service which loads it
+    @FunctionalInterface
+    public interface Body<T, E extends Exception> {
+        T load() throws E;
+    }
+}
@@ -0,0 +1,74 @@
+package fr.fullstack.shopapp.config;
+
+import fr.fullstack.shopapp.model.ImportJob;
+import fr.fullstack.shopapp.model.ImportJobStatus;
+import fr.fullstack.shopapp.service.ExportService;
+import fr.fullstack.shopapp.service.ImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Command line import, e.g.
+ * java -jar shop-app.jar --spring.main.web-application-type=none
+ *     --shop.import.file=products.ndjson --shop.import.target=PRODUCTS [--shop.import.resume-job=12]
+ * The format is CSV for the .csv files, NDJSON otherwise.
+ */
+@Component
+public class ImportRunner implements ApplicationRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportRunner.class);
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private ImportService importService;
+
+    // stop the application once the file is imported
+    @Value("${shop.import.exit:true}")
+    private boolean exit;
+
+    @Value("${shop.import.file:}")
+    private String file;
+
+    @Value("${shop.import.resume-job:#{null}}")
+    private Long resumeJob;
+
+    @Value("${shop.import.target:PRODUCTS}")
+    private ImportService.Target target;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (file.isEmpty()) {
+            return;
+        }
+
+        ExportService.Format format = file.toLowerCase().endsWith(".csv")
+                ? ExportService.Format.CSV
+                : ExportService.Format.NDJSON;
+        ImportJob job;
+        try (InputStream in = Files.newInputStream(Path.of(file))) {
+            job = importService.importData(target, format, in, file, Optional.ofNullable(resumeJob));
+        }
+        LOGGER.info("Import {} of {}: {}, {} rows imported, {} rejected, {} rows/s{}",
+                job.getId(), file, job.getStatus(), job.getImportedRows(), job.getRejectedRows(),
+                Math.round(job.getRowsPerSecond()),
+                job.getLastError() == null ? "" : ", last error: " + job.getLastError());
+
+        if (exit) {
+            int code = job.getStatus() == ImportJobStatus.COMPLETED ? 0 : 1;
+            System.exit(SpringApplication.exit(context, () -> code));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package fr.fullstack.shopapp.config;
+
+import fr.fullstack.shopapp.service.IndexingOutboxService;
+import fr.fullstack.shopapp.service.SearchIndexRebuildService;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    // timers of the @Timed services, tagged with the class, the method and the exception
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    // lag of the search indexes behind the database, read on each scrape
+    @Bean
+    public MeterBinder indexingMetrics(IndexingOutboxService outboxService, SearchIndexRebuildService rebuildService) {
+        return registry -> {
+            Gauge.builder("shopapp.indexing.outbox.pending", outboxService, s -> s.getStatus().getPending())
+                    .description("Indexing events waiting to be applied to Elasticsearch")
+                    .register(registry);
+            Gauge.builder("shopapp.indexing.outbox.failed", outboxService, s -> s.getStatus().getFailed())
+                    .description("Indexing events given up after the max attempts")
+                    .register(registry);
+            Gauge.builder("shopapp.indexing.rebuild.running", rebuildService, s -> s.getProgress().getRunning() ? 1 : 0)
+                    .description("1 while the search indexes are rebuilt")
+                    .register(registry);
+        };
+    }
+}
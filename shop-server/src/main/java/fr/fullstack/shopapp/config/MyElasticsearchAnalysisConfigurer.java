@@ -1,5 +1,7 @@
 package fr.fullstack.shopapp.config;
 
+import fr.fullstack.shopapp.model.Locale;
+import fr.fullstack.shopapp.search.LocalizedTextBinder;
 import org.hibernate.search.backend.elasticsearch.analysis.ElasticsearchAnalysisConfigurationContext;
 import org.hibernate.search.backend.elasticsearch.analysis.ElasticsearchAnalysisConfigurer;
 import org.springframework.stereotype.Component;
@@ -14,5 +16,46 @@ public class MyElasticsearchAnalysisConfigurer implements ElasticsearchAnalysisC
 
         context.normalizer("custom_normalizer").custom()
                 .tokenFilters("lowercase", "asciifolding");
+
+        // search-as-you-type: the prefixes of each word are indexed, the searched text is not split in prefixes
+        context.tokenFilter("autocomplete_edge_ngram").type("edge_ngram")
+                .param("min_gram", 1)
+                .param("max_gram", 20);
+        context.analyzer("autocomplete_indexing").custom()
+                .tokenizer("standard")
+                .tokenFilters("lowercase", "asciifolding", "autocomplete_edge_ngram");
+        context.analyzer("autocomplete_search").custom()
+                .tokenizer("standard")
+                .tokenFilters("lowercase", "asciifolding");
+
+        // one analyzer per product locale, used by the name_xx and description_xx fields
+        for (Locale locale : Locale.values()) {
+            switch (locale) {
+                case FR:
+                    context.tokenFilter("elision_fr").type("elision")
+                            .param("articles_case", true)
+                            .param("articles", "l", "m", "t", "qu", "n", "s", "j", "d", "c",
+                                    "jusqu", "quoiqu", "lorsqu", "puisqu");
+                    context.tokenFilter("stop_fr").type("stop")
+                            .param("stopwords", "_french_");
+                    context.tokenFilter("stemmer_fr").type("stemmer")
+                            .param("language", "light_french");
+                    context.analyzer(LocalizedTextBinder.analyzerName(locale)).custom()
+                            .tokenizer("standard")
+                            .tokenFilters("elision_fr", "lowercase", "stop_fr", "asciifolding", "stemmer_fr");
+                    break;
+                case EN:
+                    context.tokenFilter("possessive_en").type("stemmer")
+                            .param("language", "possessive_english");
+                    context.tokenFilter("stop_en").type("stop")
+                            .param("stopwords", "_english_");
+                    context.tokenFilter("stemmer_en").type("stemmer")
+                            .param("language", "english");
+                    context.analyzer(LocalizedTextBinder.analyzerName(locale)).custom()
+                            .tokenizer("standard")
+                            .tokenFilters("possessive_en", "lowercase", "stop_en", "asciifolding", "stemmer_en");
+                    break;
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,58 @@
+package fr.fullstack.shopapp.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Number of SQL queries run by each request, to catch N+1 loadings:
+ * published by endpoint in the http.server.requests.queries metric, and logged
+ * when a request runs more than shop.query-budget.max-per-request queries.
+ */
+@Component
+public class QueryBudgetFilter extends OncePerRequestFilter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryBudgetFilter.class);
+
+    @Value("${shop.query-budget.max-per-request:10}")
+    private int maxQueriesPerRequest;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        QueryCountInspector.start();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            int count = QueryCountInspector.stop();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+
+            DistributionSummary.builder("http.server.requests.queries")
+                    .description("SQL queries run by a request")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .record(count);
+
+            if (count > maxQueriesPerRequest) {
+                LOGGER.warn("{} {} ran {} SQL queries (budget: {})",
+                        request.getMethod(), uri, count, maxQueriesPerRequest);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package fr.fullstack.shopapp.config;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+
+import java.sql.SQLException;
+
+/**
+ * With a read replica, the sessions which read from it only get entities from the
+ * second-level cache (CacheMode.GET): the rows of the replica may lag behind the primary
+ * and must not replace the up-to-date ones written to the cache by the primary.
+ *
+ * The mode is set at the start of each transaction, and again at its end for a session
+ * which outlives it, whose statements follow ReplicaRoutingDataSource.
+ */
+public class ReplicaAwareJpaDialect extends HibernateJpaDialect {
+    private final boolean replica;
+
+    public ReplicaAwareJpaDialect(boolean replica) {
+        this.replica = replica;
+    }
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException, TransactionException {
+        Session session = getSession(entityManager);
+        session.setCacheMode(cacheMode(definition.isReadOnly()
+                && ReplicaRoutingDataSource.readsFromReplica(true)));
+        return new ReplicaTransactionData(session, super.beginTransaction(entityManager, definition));
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        ReplicaTransactionData data = (ReplicaTransactionData) transactionData;
+        super.cleanupTransaction(data.transactionData);
+        if (data.session.isOpen()) {
+            data.session.setCacheMode(cacheMode(ReplicaRoutingDataSource.readsFromReplica(false)));
+        }
+    }
+
+    private CacheMode cacheMode(boolean readsFromReplica) {
+        return replica && readsFromReplica ? CacheMode.GET : CacheMode.NORMAL;
+    }
+
+    private static class ReplicaTransactionData {
+        private final Session session;
+
+        private final Object transactionData;
+
+        ReplicaTransactionData(Session session, Object transactionData) {
+            this.session = session;
+            this.transactionData = transactionData;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package fr.fullstack.shopapp.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Sends the read-only transactions to the replica pool, everything else to the primary.
+ * Behind a LazyConnectionDataSourceProxy: the connection is only taken at the first
+ * statement, once the transaction (and its read-only flag) has started.
+ *
+ * The session is not kept open for the request (spring.jpa.open-in-view=false): each
+ * transaction takes its own connection, so a read-only one after a write, or a write after
+ * a read, does not reuse the connection of the previous one.
+ *
+ * The replica lags behind the primary: once a request has opened a read-write transaction,
+ * its next reads go to the primary, so that it reads its own writes. Outside of a
+ * transaction, the connection goes to the replica in a request, to the primary elsewhere
+ * (schema update, scheduled jobs).
+ *
+ * The reads which must not lag (versions of the ETags, rebuild of the search indexes) run
+ * in onPrimary. The sessions reading from the replica do not put its rows in the
+ * second-level cache (see ReplicaAwareJpaDialect).
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    static final String PRIMARY = "primary";
+
+    static final String REPLICA = "replica";
+
+    private static final String WROTE_ATTRIBUTE = ReplicaRoutingDataSource.class.getName() + ".wrote";
+
+    private static final ThreadLocal<Boolean> ON_PRIMARY = new ThreadLocal<Boolean>();
+
+    private final Counter primaryConnections;
+
+    private final Counter replicaConnections;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, MeterRegistry registry) {
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        primaryConnections = routedConnections(registry, PRIMARY);
+        replicaConnections = routedConnections(registry, REPLICA);
+    }
+
+    /**
+     * Runs the action with the connections taken from the primary, even in a read-only
+     * transaction. The transaction must start in the action, or must not have used its
+     * connection yet.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = ON_PRIMARY.get();
+        ON_PRIMARY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                ON_PRIMARY.remove();
+            }
+        }
+    }
+
+    // read-only transaction, or statement outside of a transaction
+    static boolean readsFromReplica(boolean transaction) {
+        if (ON_PRIMARY.get() != null) {
+            return false;
+        }
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        boolean wrote = request != null
+                && request.getAttribute(WROTE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null;
+        return !wrote && (transaction || request != null);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        boolean transaction = TransactionSynchronizationManager.isActualTransactionActive();
+        if (transaction && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            RequestAttributes request = RequestContextHolder.getRequestAttributes();
+            if (request != null) {
+                request.setAttribute(WROTE_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+            }
+            primaryConnections.increment();
+            return PRIMARY;
+        }
+
+        if (readsFromReplica(transaction)) {
+            replicaConnections.increment();
+            return REPLICA;
+        }
+        primaryConnections.increment();
+        return PRIMARY;
+    }
+
+    private static Counter routedConnections(MeterRegistry registry, String pool) {
+        return Counter.builder("shopapp.datasource.connections")
+                .description("Connections taken from each pool by the routing datasource")
+                .tag("pool", pool)
+                .register(registry);
+    }
+}
@@ -0,0 +1,35 @@
+package fr.fullstack.shopapp.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Creates the change counters of the catalog tables and their triggers (table-changes.sql),
+ * before the first request: the ETags of the lists read them.
+ */
+@Component
+public class TableChangesInitializer {
+    // the triggers are created on the tables of the schema update of Hibernate, done with the factory
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @PostConstruct
+    public void createCounters() {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("table-changes.sql"));
+        // plpgsql bodies: the script is sent as a single statement
+        populator.setSeparator(ScriptUtils.EOF_STATEMENT_SEPARATOR);
+        populator.execute(primaryDataSource);
+    }
+}
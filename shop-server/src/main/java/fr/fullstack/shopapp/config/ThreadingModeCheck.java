@@ -0,0 +1,39 @@
+package fr.fullstack.shopapp.config;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Spring AOT (fast-start profile) evaluates the threading conditions of Spring Boot at build
+ * time: with a jar built for platform threads, VIRTUAL_THREADS=true would only switch the
+ * services reading the property (ImportService), not Tomcat nor the task executor. The start
+ * fails instead when the beans do not match the property.
+ */
+@Component
+public class ThreadingModeCheck implements SmartInitializingSingleton {
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private Executor applicationTaskExecutor;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // Spring Boot uses a SimpleAsyncTaskExecutor for the virtual threads, a pool otherwise
+        boolean virtualBeans = applicationTaskExecutor instanceof SimpleAsyncTaskExecutor;
+        if (virtualBeans != virtualThreads) {
+            throw new IllegalStateException("spring.threads.virtual.enabled=" + virtualThreads
+                    + " but the application was built by Spring AOT with virtual threads "
+                    + (virtualBeans ? "enabled" : "disabled")
+                    + ": rebuild it with mvn -Pfast-start -Dvirtual.threads=" + virtualThreads + " package");
+        }
+    }
+}
@@ -14,7 +14,8 @@ public class WebSecurityConfig implements WebMvcConfigurer {
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/**")
-                .allowedMethods("POST", "GET", "PUT", "DELETE");
+                .allowedMethods("POST", "GET", "PUT", "DELETE")
+                .exposedHeaders("ETag");
     }
 
     @Bean
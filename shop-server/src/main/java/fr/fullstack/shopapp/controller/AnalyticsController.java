@@ -0,0 +1,134 @@
+package fr.fullstack.shopapp.controller;
+
+import fr.fullstack.shopapp.dto.AnalyticsStatus;
+import fr.fullstack.shopapp.dto.CategoryStats;
+import fr.fullstack.shopapp.dto.ShopCategoryStats;
+import fr.fullstack.shopapp.dto.ShopStats;
+import fr.fullstack.shopapp.dto.ShopsPerMonth;
+import fr.fullstack.shopapp.service.AnalyticsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/v1/analytics")
+public class AnalyticsController {
+
+    @Autowired
+    private AnalyticsService service;
+
+    @GetMapping("/shops")
+    @Operation(summary = "Get the statistics of the shops",
+            description = "Number of products and categories, min, average and max price of each shop")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics of the shops"),
+            @ApiResponse(responseCode = "400", description = "Unknown sort")
+    })
+    public ResponseEntity<Page<ShopStats>> getShopStats(
+            @Parameter(description = "nbProducts (default), nbCategories, minPrice, avgPrice, maxPrice or name")
+            @RequestParam(required = false) Optional<String> sortBy,
+            Pageable pageable
+    ) {
+        try {
+            return ResponseEntity.ok(service.getShopStats(sortBy, pageable));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/shops/{id}")
+    @Operation(summary = "Get the statistics of a shop")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics of the shop"),
+            @ApiResponse(responseCode = "400", description = "Invalid shop ID")
+    })
+    public ResponseEntity<ShopStats> getShopStatsById(@PathVariable long id) {
+        try {
+            return ResponseEntity.ok(service.getShopStatsById(id));
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/shops/{id}/categories")
+    @Operation(summary = "Get the distribution of the products of a shop among the categories")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Number of products of the shop in each category")
+    })
+    public ResponseEntity<List<ShopCategoryStats>> getShopCategoryStats(@PathVariable long id) {
+        return ResponseEntity.ok(service.getShopCategoryStats(id));
+    }
+
+    @GetMapping("/categories")
+    @Operation(summary = "Get the statistics of the categories",
+            description = "Number of products and shops, min, average and max price of each category")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics of the categories"),
+            @ApiResponse(responseCode = "400", description = "Unknown sort")
+    })
+    public ResponseEntity<Page<CategoryStats>> getCategoryStats(
+            @Parameter(description = "nbProducts (default), nbShops, minPrice, avgPrice, maxPrice or name")
+            @RequestParam(required = false) Optional<String> sortBy,
+            Pageable pageable
+    ) {
+        try {
+            return ResponseEntity.ok(service.getCategoryStats(sortBy, pageable));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/shops-per-month")
+    @Operation(summary = "Get the number of shops created per month")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Shops created in each month")
+    })
+    public ResponseEntity<List<ShopsPerMonth>> getShopsPerMonth(
+            @Parameter(description = "First month (format: yyyy-MM)")
+            @RequestParam(required = false) Optional<YearMonth> from,
+            @Parameter(description = "Last month (format: yyyy-MM)")
+            @RequestParam(required = false) Optional<YearMonth> to
+    ) {
+        return ResponseEntity.ok(service.getShopsPerMonth(from, to));
+    }
+
+    @GetMapping("/status")
+    @Operation(summary = "Get the freshness of the statistics",
+            description = "Last refresh of the views, and whether the catalog has changed since")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Status of the statistics")
+    })
+    public ResponseEntity<AnalyticsStatus> getStatus() {
+        return ResponseEntity.ok(service.getStatus());
+    }
+
+    @PostMapping("/refresh")
+    @Operation(summary = "Refresh the statistics now")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics refreshed"),
+            @ApiResponse(responseCode = "409", description = "Another instance is refreshing the statistics")
+    })
+    public ResponseEntity<AnalyticsStatus> refresh() {
+        if (!service.refresh()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Les statistiques sont déjà en cours de rafraîchissement");
+        }
+        return ResponseEntity.ok(service.getStatus());
+    }
+}
@@ -1,7 +1,10 @@
 package fr.fullstack.shopapp.controller;
 
+import fr.fullstack.shopapp.config.HttpCachePolicies;
+import fr.fullstack.shopapp.dto.KeysetSlice;
 import fr.fullstack.shopapp.model.Category;
 import fr.fullstack.shopapp.service.CategoryService;
+import fr.fullstack.shopapp.util.ETags;
 import fr.fullstack.shopapp.util.ErrorValidation;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -19,10 +22,13 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import jakarta.validation.Valid;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/v1/categories")
@@ -31,6 +37,9 @@ public class CategoryController {
     @Autowired
     private CategoryService service;
 
+    @Autowired
+    private HttpCachePolicies cachePolicies;
+
     @Operation(summary = "Create a category", description = "Creates a new category in the system")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Category successfully created"),
@@ -68,21 +77,44 @@ public class CategoryController {
     @GetMapping
     @Operation(summary = "Get all categories", description = "Retrieves a paginated list of categories")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "List of categories retrieved successfully")
+            @ApiResponse(responseCode = "200", description = "List of categories retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag given in If-None-Match")
     })
-    public ResponseEntity<Page<Category>> getAllCategories(Pageable pageable) {
-        return ResponseEntity.ok(service.getCategoryList(pageable));
+    public ResponseEntity<Page<Category>> getAllCategories(Pageable pageable, WebRequest request) {
+        long change = service.getCategoryListChange();
+        return cachePolicies.conditional(request, Optional.of(ETags.ofList("categories", change)),
+                cachePolicies.categories(), () -> service.getCategoryList(pageable, change));
+    }
+
+    @GetMapping("/scroll")
+    @Operation(summary = "Scroll through categories",
+            description = "Retrieves categories with a keyset pagination, without total count")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Categories retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or size")
+    })
+    public ResponseEntity<KeysetSlice<Category>> scrollCategories(
+            @RequestParam(required = false) Optional<String> after,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        try {
+            return ResponseEntity.ok(service.getCategoryWindow(after, size));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @Operation(summary = "Get a category by ID", description = "Retrieves a category by its ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Category retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag given in If-None-Match"),
             @ApiResponse(responseCode = "400", description = "Invalid ID or category not found")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<Category> getCategoryById(@PathVariable long id) {
+    public ResponseEntity<Category> getCategoryById(@PathVariable long id, WebRequest request) {
         try {
-            return ResponseEntity.ok().body(service.getCategoryById(id));
+            return cachePolicies.conditional(request, service.getCategoryETag(id), cachePolicies.categories(),
+                    () -> service.getCategoryById(id), () -> service.reloadCategoryById(id), ETags::of);
         } catch (Exception e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
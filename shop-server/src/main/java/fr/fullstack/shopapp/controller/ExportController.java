@@ -0,0 +1,102 @@
+package fr.fullstack.shopapp.controller;
+
+import fr.fullstack.shopapp.service.ExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.concurrent.Callable;
+
+// the exports are written by an async task, the HTTP thread is released at once
+@RestController
+@RequestMapping("/api/v1/export")
+public class ExportController {
+    private static final MediaType CSV = new MediaType("text", "csv");
+
+    private static final MediaType NDJSON = new MediaType("application", "x-ndjson");
+
+    @Autowired
+    private ExportService exportService;
+
+    // max duration of an export, the other async requests keep the default timeout
+    @Value("${shop.export.timeout:1800000}")
+    private long timeout;
+
+    @GetMapping("/products")
+    @Operation(summary = "Export all the products",
+            description = "Streams all the products, one JSON document (NDJSON) or one CSV row per line")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Products export"),
+            @ApiResponse(responseCode = "400", description = "Unknown format")
+    })
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @Parameter(description = "NDJSON or CSV")
+            @RequestParam(defaultValue = "NDJSON") ExportService.Format format,
+            NativeWebRequest request
+    ) {
+        return stream(request, "products", format, out -> exportService.exportProducts(format, out));
+    }
+
+    @GetMapping("/shops")
+    @Operation(summary = "Export all the shops",
+            description = "Streams all the shops, one JSON document (NDJSON) or one CSV row per line")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Shops export"),
+            @ApiResponse(responseCode = "400", description = "Unknown format")
+    })
+    public ResponseEntity<StreamingResponseBody> exportShops(
+            @Parameter(description = "NDJSON or CSV")
+            @RequestParam(defaultValue = "NDJSON") ExportService.Format format,
+            NativeWebRequest request
+    ) {
+        return stream(request, "shops", format, out -> exportService.exportShops(format, out));
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(
+            NativeWebRequest request, String name, ExportService.Format format, StreamingResponseBody body
+    ) {
+        WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+        asyncManager.getAsyncWebRequest().setTimeout(timeout);
+        asyncManager.registerCallableInterceptor(ExportTimeout.class.getName(), new ExportTimeout(timeout));
+
+        String extension = format == ExportService.Format.CSV ? "csv" : "ndjson";
+        return ResponseEntity.ok()
+                .contentType(format == ExportService.Format.CSV ? CSV : NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "." + extension + "\"")
+                .body(body);
+    }
+
+    /**
+     * Fails an export which timed out. Spring ignores its own timeout error once the
+     * response is committed and ends it normally, the client would take the truncated
+     * export for a complete one: an exception makes the server close the connection
+     * before the end of the response, as for an error while writing the export.
+     */
+    private static class ExportTimeout implements CallableProcessingInterceptor {
+        private final long timeout;
+
+        ExportTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        @Override
+        public <T> Object handleTimeout(NativeWebRequest request, Callable<T> task) {
+            return new IllegalStateException("Export interrompu après " + timeout + " ms");
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package fr.fullstack.shopapp.controller;
+
+import fr.fullstack.shopapp.model.ImportJob;
+import fr.fullstack.shopapp.service.ExportService;
+import fr.fullstack.shopapp.service.ImportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Optional;
+
+// the body is read as a stream while it is uploaded: send it as application/x-ndjson or text/csv,
+// not as a form or a multipart request
+@RestController
+@RequestMapping("/api/v1/import")
+public class ImportController {
+
+    @Autowired
+    private ImportService importService;
+
+    @Operation(summary = "Get an import", description = "Progress and result of an import")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import job"),
+            @ApiResponse(responseCode = "400", description = "Invalid import ID")
+    })
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<ImportJob> getJob(@PathVariable long id) {
+        try {
+            return ResponseEntity.ok(importService.getJob(id));
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Import products",
+            description = "Imports the products of the request body (NDJSON or CSV of the export format). "
+                    + "Invalid rows are skipped and counted")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import job, completed or failed"),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    @PostMapping("/products")
+    public ResponseEntity<ImportJob> importProducts(
+            @Parameter(description = "NDJSON or CSV")
+            @RequestParam(defaultValue = "NDJSON") ExportService.Format format,
+            @Parameter(description = "Resume this interrupted import: its committed rows are skipped")
+            @RequestParam(required = false) Optional<Long> resumeJob,
+            HttpServletRequest request
+    ) {
+        return importData(ImportService.Target.PRODUCTS, format, resumeJob, request);
+    }
+
+    @Operation(summary = "Import shops",
+            description = "Imports the shops of the request body (NDJSON or CSV of the export format). "
+                    + "Invalid rows are skipped and counted")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import job, completed or failed"),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    @PostMapping("/shops")
+    public ResponseEntity<ImportJob> importShops(
+            @Parameter(description = "NDJSON or CSV")
+            @RequestParam(defaultValue = "NDJSON") ExportService.Format format,
+            @Parameter(description = "Resume this interrupted import: its committed rows are skipped")
+            @RequestParam(required = false) Optional<Long> resumeJob,
+            HttpServletRequest request
+    ) {
+        return importData(ImportService.Target.SHOPS, format, resumeJob, request);
+    }
+
+    private ResponseEntity<ImportJob> importData(
+            ImportService.Target target, ExportService.Format format, Optional<Long> resumeJob,
+            HttpServletRequest request
+    ) {
+        try {
+            return ResponseEntity.ok(importService.importData(
+                    target, format, request.getInputStream(), "http:" + request.getRemoteAddr(), resumeJob));
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package fr.fullstack.shopapp.controller;
+
+import fr.fullstack.shopapp.dto.IndexingOutboxStatus;
+import fr.fullstack.shopapp.dto.SearchIndexProgress;
+import fr.fullstack.shopapp.service.IndexingOutboxService;
+import fr.fullstack.shopapp.service.SearchIndexRebuildService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@RequestMapping("/api/v1/indexing")
+public class IndexingController {
+
+    @Autowired
+    private IndexingOutboxService outboxService;
+
+    @Autowired
+    private SearchIndexRebuildService rebuildService;
+
+    @GetMapping("/outbox")
+    @Operation(summary = "Get the indexing outbox status",
+            description = "Pending and failed events, and the lag of the oldest pending event")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Outbox status")
+    })
+    public ResponseEntity<IndexingOutboxStatus> getOutboxStatus() {
+        return ResponseEntity.ok(outboxService.getStatus());
+    }
+
+    @GetMapping("/rebuild")
+    @Operation(summary = "Get the progress of the search indexes rebuild")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Rebuild progress of each index")
+    })
+    public ResponseEntity<SearchIndexProgress> getRebuildProgress() {
+        return ResponseEntity.ok(rebuildService.getProgress());
+    }
+
+    @PostMapping("/rebuild")
+    @Operation(summary = "Rebuild the search indexes in the background",
+            description = "Indexes into a new index and swaps the alias once done, the search stays available")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Rebuild started"),
+            @ApiResponse(responseCode = "409", description = "A rebuild is already running")
+    })
+    public ResponseEntity<SearchIndexProgress> startRebuild(
+            @Parameter(description = "Rebuild even the indexes which are up to date")
+            @RequestParam(defaultValue = "true") boolean force
+    ) {
+        if (!rebuildService.start(force)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Une reconstruction est déjà en cours");
+        }
+        return ResponseEntity.accepted().body(rebuildService.getProgress());
+    }
+
+    @PostMapping("/outbox/replay")
+    @Operation(summary = "Replay the failed indexing events",
+            description = "Retries the events which reached the maximum attempts, optionally re-enqueues every shop")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Number of events replayed"),
+            @ApiResponse(responseCode = "500", description = "Error during the replay")
+    })
+    public ResponseEntity<Integer> replayOutbox(
+            @Parameter(description = "Also enqueue every shop for indexing")
+            @RequestParam(defaultValue = "false") boolean full
+    ) {
+        try {
+            return ResponseEntity.ok(outboxService.replay(full));
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Error during outbox replay: " + e.getMessage());
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package fr.fullstack.shopapp.controller;
 
+import fr.fullstack.shopapp.config.HttpCachePolicies;
+import fr.fullstack.shopapp.dto.BatchResult;
+import fr.fullstack.shopapp.dto.KeysetSlice;
+import fr.fullstack.shopapp.dto.PriceBucket;
+import fr.fullstack.shopapp.dto.SearchResultPage;
+import fr.fullstack.shopapp.model.Locale;
 import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.service.ElasticsearchService;
+import fr.fullstack.shopapp.service.ProductBatchService;
 import fr.fullstack.shopapp.service.ProductService;
+import fr.fullstack.shopapp.util.ETags;
 import fr.fullstack.shopapp.util.ErrorValidation;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,9 +31,12 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import jakarta.validation.Valid;
+import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
 @RestController
@@ -33,6 +46,15 @@ public class ProductController {
     @Autowired
     private ProductService service;
 
+    @Autowired
+    private ProductBatchService batchService;
+
+    @Autowired
+    private ElasticsearchService elasticsearchService;
+
+    @Autowired
+    private HttpCachePolicies cachePolicies;
+
     @Operation(summary = "Create a product", description = "Creates a new product in the system")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Product successfully created"),
@@ -52,6 +74,41 @@ public class ProductController {
         }
     }
 
+    @Operation(summary = "Create products by batch",
+            description = "Creates all the products, or none of them if one is invalid. "
+                    + "The result gives the id of each created product, or the errors of the invalid ones")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Products successfully created"),
+            @ApiResponse(responseCode = "400", description = "Invalid products, nothing created")
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResult> createProducts(@RequestBody List<Product> products) {
+        try {
+            BatchResult result = batchService.createProducts(products);
+            if (result.getFailed() > 0) {
+                return ResponseEntity.badRequest().body(result);
+            }
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Delete products by batch",
+            description = "Deletes the products of the given ids, the unknown ids are reported as not found")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Result for each id"),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    @PostMapping("/batch/delete")
+    public ResponseEntity<BatchResult> deleteProducts(@RequestBody List<Long> ids) {
+        try {
+            return ResponseEntity.ok(batchService.deleteProducts(ids));
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     @Operation(summary = "Delete a product", description = "Deletes a product by its ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Product successfully deleted"),
@@ -70,20 +127,23 @@ public class ProductController {
     @Operation(summary = "Get a product by ID", description = "Retrieves a product by its ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Product retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag given in If-None-Match"),
             @ApiResponse(responseCode = "400", description = "Invalid ID or product not found")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getProductById(@PathVariable long id) {
+    public ResponseEntity<Product> getProductById(@PathVariable long id, WebRequest request) {
         try {
-            return ResponseEntity.ok().body(service.getProductById(id));
+            return cachePolicies.conditional(request, service.getProductETag(id), cachePolicies.entity(),
+                    () -> service.getProductById(id), () -> service.reloadProductById(id), ETags::of);
         } catch (Exception e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
     }
 
-    @Operation(summary = "Get a list of products (filtering by shop and category is possible)", description = "Retrieves a paginated list of products, optionally filtered by shop and category")
+    @Operation(summary = "Get a list of products (filtering by shop, category and price, sorting by price is possible)", description = "Retrieves a paginated list of products, optionally filtered by shop, category and price range, and sorted by price")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "List of products retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag given in If-None-Match"),
             @ApiResponse(responseCode = "400", description = "Bad request or invalid parameters")
     })
     @GetMapping
@@ -91,11 +151,97 @@ public class ProductController {
             Pageable pageable,
             @RequestParam(required = false) Optional<Long> shopId,
              @RequestParam(required = false)
-            Optional<Long> categoryId
+            Optional<Long> categoryId,
+            @Parameter(description = "Minimum price (included)")
+            @RequestParam(required = false) Optional<BigDecimal> minPrice,
+            @Parameter(description = "Maximum price (included)")
+            @RequestParam(required = false) Optional<BigDecimal> maxPrice,
+            @Parameter(description = "Sort by price (price or priceDesc) or by id")
+            @RequestParam(required = false) Optional<String> sortBy,
+            WebRequest request
+    ) {
+        try {
+            return cachePolicies.conditional(request, Optional.of(service.getShopProductListETag(shopId)),
+                    cachePolicies.list(),
+                    () -> service.getShopProductList(shopId, categoryId, minPrice, maxPrice, sortBy, pageable)
+            );
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Get the price histogram of a shop",
+            description = "Number of products of the shop in price buckets of equal widths, "
+                    + "from its lowest to its highest price")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Histogram retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag given in If-None-Match"),
+            @ApiResponse(responseCode = "400", description = "Invalid number of buckets")
+    })
+    @GetMapping("/price-histogram")
+    public ResponseEntity<List<PriceBucket>> getPriceHistogram(
+            @RequestParam long shopId,
+            @Parameter(description = "Number of buckets, from 1 to 100")
+            @RequestParam(defaultValue = "10") int buckets,
+            WebRequest request
+    ) {
+        try {
+            return cachePolicies.conditional(request, Optional.of(service.getPriceHistogramETag(shopId, buckets)),
+                    cachePolicies.list(),
+                    () -> service.getPriceHistogram(shopId, buckets)
+            );
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Scroll through products (filtering by shop and category is possible)",
+            description = "Retrieves products with a keyset pagination, without total count")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Products retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or size")
+    })
+    @GetMapping("/scroll")
+    public ResponseEntity<KeysetSlice<Product>> scrollProductsOfShop(
+            @RequestParam(required = false) Optional<Long> shopId,
+            @RequestParam(required = false) Optional<Long> categoryId,
+            @RequestParam(required = false) Optional<String> after,
+            @RequestParam(defaultValue = "20") int size
     ) {
-        return ResponseEntity.ok(
-                service.getShopProductList(shopId, categoryId, pageable)
-        );
+        try {
+            return ResponseEntity.ok(service.getShopProductWindow(shopId, categoryId, after, size));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Search products with Elasticsearch",
+            description = "Full text search on the localized names and descriptions, with price, "
+                    + "category and shop filters, and category and shop facets")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Products found and facets"),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters")
+    })
+    public ResponseEntity<SearchResultPage<Product>> searchProducts(
+            @Parameter(description = "Text to search in the product names and descriptions")
+            @RequestParam(required = false) String searchText,
+            @Parameter(description = "Only search the texts of this locale (FR or EN)")
+            @RequestParam(required = false) Optional<Locale> locale,
+            @Parameter(description = "Minimum price")
+            @RequestParam(required = false) Optional<BigDecimal> minPrice,
+            @Parameter(description = "Maximum price")
+            @RequestParam(required = false) Optional<BigDecimal> maxPrice,
+            @RequestParam(required = false) Optional<Long> categoryId,
+            @RequestParam(required = false) Optional<Long> shopId,
+            @Parameter(description = "Only products of shops which are not in vacations")
+            @RequestParam(required = false) Optional<Boolean> openShopsOnly,
+            @Parameter(description = "Compute the category and shop facets")
+            @RequestParam(defaultValue = "true") boolean facets,
+            Pageable pageable) {
+
+        return ResponseEntity.ok(elasticsearchService.searchProducts(
+                searchText, locale, minPrice, maxPrice, categoryId, shopId, openShopsOnly, facets, pageable));
     }
 
     @Operation(summary = "Update a product", description = "Updates an existing product")
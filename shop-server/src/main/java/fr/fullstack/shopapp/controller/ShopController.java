@@ -1,8 +1,16 @@
 package fr.fullstack.shopapp.controller;
 
+import fr.fullstack.shopapp.config.HttpCachePolicies;
+import fr.fullstack.shopapp.dto.KeysetSlice;
+import fr.fullstack.shopapp.dto.SearchResultPage;
+import fr.fullstack.shopapp.dto.ShopSchedule;
+import fr.fullstack.shopapp.dto.ShopSuggestion;
 import fr.fullstack.shopapp.service.ElasticsearchService;
 import fr.fullstack.shopapp.model.Shop;
+import fr.fullstack.shopapp.service.SearchIndexRebuildService;
+import fr.fullstack.shopapp.service.ShopCounterService;
 import fr.fullstack.shopapp.service.ShopService;
+import fr.fullstack.shopapp.util.ETags;
 import fr.fullstack.shopapp.util.ErrorValidation;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -16,11 +24,13 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.Errors;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import jakarta.validation.Valid;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 @RestController
@@ -31,6 +41,12 @@ public class ShopController {
     private ShopService service;
     @Autowired
     private ElasticsearchService elasticsearchService;
+    @Autowired
+    private ShopCounterService shopCounterService;
+    @Autowired
+    private HttpCachePolicies cachePolicies;
+    @Autowired
+    private SearchIndexRebuildService rebuildService;
 
     @Operation(summary = "Create a shop", description = "Creates a new shop in the system")
     @ApiResponses(value = {
@@ -69,6 +85,7 @@ public class ShopController {
     @Operation(summary = "Get all shops", description = "Retrieves a paginated list of shops with optional filters")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "List of shops"),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag given in If-None-Match"),
             @ApiResponse(responseCode = "400", description = "Invalid request parameters")
     })
     @GetMapping
@@ -81,27 +98,80 @@ public class ShopController {
             @Parameter(description = "Filter shops created after a specific date (format: yyyy-MM-dd)")
             @RequestParam(required = false) Optional<String> createdAfter,
             @Parameter(description = "Filter shops created before a specific date (format: yyyy-MM-dd)")
-            @RequestParam(required = false) Optional<String> createdBefore
+            @RequestParam(required = false) Optional<String> createdBefore,
+            @Parameter(description = "Only shops open at this time: now or a local time yyyy-MM-ddTHH:mm")
+            @RequestParam(required = false) Optional<String> openAt,
+            WebRequest request
     ) {
-        return ResponseEntity.ok(
-                service.getShopList(sortBy, inVacations, createdAfter, createdBefore, pageable)
-        );
+        try {
+            return cachePolicies.conditional(request, Optional.of(service.getShopListETag(openAt)),
+                    cachePolicies.list(),
+                    () -> service.getShopList(sortBy, inVacations, createdAfter, createdBefore, openAt, pageable)
+            );
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @Operation(summary = "Get a shop by ID", description = "Retrieves a shop by its unique ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Shop details"),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag given in If-None-Match"),
             @ApiResponse(responseCode = "400", description = "Invalid shop ID")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<Shop> getShopById(@PathVariable long id) {
+    public ResponseEntity<Shop> getShopById(@PathVariable long id, WebRequest request) {
+        try {
+            return cachePolicies.conditional(request, service.getShopETag(id), cachePolicies.entity(),
+                    () -> service.getShopById(id), () -> service.reloadShopById(id), ETags::of);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Get the weekly schedule of a shop",
+            description = "Merged opening hours, and whether the shop is open at a time with its next opening "
+                    + "or closing")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Schedule of the shop"),
+            @ApiResponse(responseCode = "400", description = "Invalid shop ID or time")
+    })
+    @GetMapping("/{id}/schedule")
+    public ResponseEntity<ShopSchedule> getShopSchedule(
+            @PathVariable long id,
+            @Parameter(description = "now (default) or a local time yyyy-MM-ddTHH:mm")
+            @RequestParam(required = false) Optional<String> at
+    ) {
         try {
-            return ResponseEntity.ok().body(service.getShopById(id));
+            return ResponseEntity.ok(service.getShopSchedule(id, at));
         } catch (Exception e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
     }
 
+    @Operation(summary = "Scroll through shops",
+            description = "Retrieves shops with a keyset pagination, without total count")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "List of shops"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or size")
+    })
+    @GetMapping("/scroll")
+    public ResponseEntity<KeysetSlice<Shop>> scrollShops(
+            @Parameter(description = "Sort the shops by specific fields (e.g., name, nbProducts, createdAt)")
+            @RequestParam(required = false) Optional<String> sortBy,
+            @Parameter(description = "Filter shops by vacation status")
+            @RequestParam(required = false) Optional<Boolean> inVacations,
+            @Parameter(description = "Cursor returned as next by the previous page")
+            @RequestParam(required = false) Optional<String> after,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        try {
+            return ResponseEntity.ok(service.getShopWindow(sortBy, inVacations, after, size));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     @Operation(summary = "Update a shop", description = "Updates the details of an existing shop")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Shop successfully updated",
@@ -124,7 +194,7 @@ public class ShopController {
 
     @GetMapping("/search")
     @Operation(summary = "Search shops with Elasticsearch", description = "Full text search on shops with filters")
-    public ResponseEntity<Page<Shop>> searchShops(
+    public ResponseEntity<SearchResultPage<?>> searchShops(
             @Parameter(description = "Text to search in shop names")
             @RequestParam(required = false) String searchText,
             @Parameter(description = "Filter shops by vacation status")
@@ -133,21 +203,62 @@ public class ShopController {
             @RequestParam(required = false) Optional<LocalDate> createdAfter,
             @Parameter(description = "Filter shops created before date (format: yyyy-MM-dd)")
             @RequestParam(required = false) Optional<LocalDate> createdBefore,
+            @Parameter(description = "Only shops open at this time: now or a local time yyyy-MM-ddTHH:mm")
+            @RequestParam(required = false) Optional<String> openAt,
+            @Parameter(description = "Return lightweight hits read from Elasticsearch only, without database access")
+            @RequestParam(defaultValue = "false") boolean projection,
             Pageable pageable) {
 
-        return ResponseEntity.ok(elasticsearchService.searchShops(
-                searchText, inVacations, createdAfter, createdBefore, pageable));
+        try {
+            if (projection) {
+                return ResponseEntity.ok(elasticsearchService.searchShopHits(
+                        searchText, inVacations, createdAfter, createdBefore, openAt, pageable));
+            }
+            return ResponseEntity.ok(elasticsearchService.searchShops(
+                    searchText, inVacations, createdAfter, createdBefore, openAt, pageable));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/suggest")
+    @Operation(summary = "Suggest shop names while typing",
+            description = "Returns the shops whose name words start with the typed words")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Suggested shops, best matches first")
+    })
+    public ResponseEntity<List<ShopSuggestion>> suggestShops(
+            @Parameter(description = "Beginning of the shop name")
+            @RequestParam(defaultValue = "") String q,
+            @Parameter(description = "Number of suggestions (max 20)")
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(elasticsearchService.suggestShops(q, size));
     }
 
     @PostMapping("/reindex")
-    @Operation(summary = "Reindex all shops in Elasticsearch")
+    @Operation(summary = "Reindex all shops in Elasticsearch",
+            description = "Starts a forced rebuild of the search indexes in the background, "
+                    + "its progress is given by GET /api/v1/indexing/rebuild")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Rebuild started"),
+            @ApiResponse(responseCode = "409", description = "A rebuild is already running")
+    })
     public ResponseEntity<Void> reindexAll() {
+        if (!rebuildService.start(true)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Une reconstruction est déjà en cours");
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping("/counters/reconcile")
+    @Operation(summary = "Rebuild the product and category counters of all shops")
+    public ResponseEntity<Void> reconcileCounters() {
         try {
-            elasticsearchService.reindexAll();
+            shopCounterService.reconcileAll();
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
-                    "Error during reindexing: " + e.getMessage());
+                    "Error during counters reconciliation: " + e.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package fr.fullstack.shopapp.dto;
+
+import java.time.Instant;
+
+/**
+ * Freshness of the analytics views: last refresh, its duration, and whether the
+ * catalog has changed since.
+ */
+public class AnalyticsStatus {
+    private final Instant refreshedAt;
+
+    private final Long refreshMillis;
+
+    private final boolean stale;
+
+    public AnalyticsStatus(Instant refreshedAt, Long refreshMillis, boolean stale) {
+        this.refreshedAt = refreshedAt;
+        this.refreshMillis = refreshMillis;
+        this.stale = stale;
+    }
+
+    public Instant getRefreshedAt() {
+        return refreshedAt;
+    }
+
+    public Long getRefreshMillis() {
+        return refreshMillis;
+    }
+
+    public boolean getStale() {
+        return stale;
+    }
+}
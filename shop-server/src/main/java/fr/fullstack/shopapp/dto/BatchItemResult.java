@@ -0,0 +1,53 @@
+package fr.fullstack.shopapp.dto;
+
+/**
+ * Result of one item of a batch request, {@code index} being its position in the request.
+ */
+public class BatchItemResult {
+    public enum Status {
+        CREATED, DELETED, INVALID, NOT_FOUND
+    }
+
+    private final Long id;
+
+    private final int index;
+
+    private final String message;
+
+    private final Status status;
+
+    public BatchItemResult(int index, Long id, Status status, String message) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+        this.message = message;
+    }
+
+    public static BatchItemResult invalid(int index, String message) {
+        return new BatchItemResult(index, null, Status.INVALID, message);
+    }
+
+    public static BatchItemResult of(int index, long id, Status status) {
+        return new BatchItemResult(index, id, status, null);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.CREATED || status == Status.DELETED;
+    }
+}
@@ -0,0 +1,26 @@
+package fr.fullstack.shopapp.dto;
+
+import java.util.List;
+
+public class BatchResult {
+    private final List<BatchItemResult> items;
+
+    private final long succeeded;
+
+    public BatchResult(List<BatchItemResult> items) {
+        this.items = items;
+        this.succeeded = items.stream().filter(BatchItemResult::isSuccess).count();
+    }
+
+    public long getFailed() {
+        return items.size() - succeeded;
+    }
+
+    public List<BatchItemResult> getItems() {
+        return items;
+    }
+
+    public long getSucceeded() {
+        return succeeded;
+    }
+}
@@ -0,0 +1,62 @@
+package fr.fullstack.shopapp.dto;
+
+/**
+ * Statistics of a category, read from the analytics_category_stats view. The prices
+ * are null for a category without products.
+ */
+public class CategoryStats {
+    private final Double avgPrice;
+
+    private final long categoryId;
+
+    private final Double maxPrice;
+
+    private final Double minPrice;
+
+    private final String name;
+
+    private final long nbProducts;
+
+    private final long nbShops;
+
+    public CategoryStats(
+            long categoryId, String name, long nbProducts, long nbShops,
+            Double minPrice, Double avgPrice, Double maxPrice
+    ) {
+        this.categoryId = categoryId;
+        this.name = name;
+        this.nbProducts = nbProducts;
+        this.nbShops = nbShops;
+        this.minPrice = minPrice;
+        this.avgPrice = avgPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    public Double getAvgPrice() {
+        return avgPrice;
+    }
+
+    public long getCategoryId() {
+        return categoryId;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getNbProducts() {
+        return nbProducts;
+    }
+
+    public long getNbShops() {
+        return nbShops;
+    }
+}
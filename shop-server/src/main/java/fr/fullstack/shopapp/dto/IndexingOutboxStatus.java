@@ -0,0 +1,53 @@
+package fr.fullstack.shopapp.dto;
+
+import java.time.Instant;
+
+public class IndexingOutboxStatus {
+    private final long failed;
+
+    private final long failedTotal;
+
+    private final Instant lastDrainAt;
+
+    private final Long lagMillis;
+
+    private final long pending;
+
+    private final long processedTotal;
+
+    public IndexingOutboxStatus(
+            long pending, long failed, Long lagMillis,
+            long processedTotal, long failedTotal, Instant lastDrainAt
+    ) {
+        this.pending = pending;
+        this.failed = failed;
+        this.lagMillis = lagMillis;
+        this.processedTotal = processedTotal;
+        this.failedTotal = failedTotal;
+        this.lastDrainAt = lastDrainAt;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getFailedTotal() {
+        return failedTotal;
+    }
+
+    public Instant getLastDrainAt() {
+        return lastDrainAt;
+    }
+
+    public Long getLagMillis() {
+        return lagMillis;
+    }
+
+    public long getPending() {
+        return pending;
+    }
+
+    public long getProcessedTotal() {
+        return processedTotal;
+    }
+}
@@ -0,0 +1,46 @@
+package fr.fullstack.shopapp.dto;
+
+import fr.fullstack.shopapp.util.KeysetCursor;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Window;
+
+import java.util.List;
+
+/**
+ * Page of a keyset pagination. Unlike a Page, no total count is computed:
+ * the next page is requested with the {@code next} cursor until it is null.
+ */
+public class KeysetSlice<T> {
+    private final List<T> content;
+
+    private final String next;
+
+    public KeysetSlice(List<T> content, String next) {
+        this.content = content;
+        this.next = next;
+    }
+
+    public static <T> KeysetSlice<T> of(Window<T> window) {
+        String next = null;
+        if (window.hasNext() && !window.isEmpty()) {
+            next = KeysetCursor.encode((KeysetScrollPosition) window.positionAt(window.size() - 1));
+        }
+        return new KeysetSlice<T>(window.getContent(), next);
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public boolean getHasNext() {
+        return next != null;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public int getSize() {
+        return content.size();
+    }
+}
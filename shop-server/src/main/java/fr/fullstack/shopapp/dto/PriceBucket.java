@@ -0,0 +1,32 @@
+package fr.fullstack.shopapp.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Number of products of a shop with a price between minPrice and maxPrice (both included).
+ */
+public class PriceBucket {
+    private final BigDecimal maxPrice;
+
+    private final BigDecimal minPrice;
+
+    private final long nbProducts;
+
+    public PriceBucket(BigDecimal minPrice, BigDecimal maxPrice, long nbProducts) {
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.nbProducts = nbProducts;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public long getNbProducts() {
+        return nbProducts;
+    }
+}
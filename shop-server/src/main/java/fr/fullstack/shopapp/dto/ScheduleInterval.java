@@ -0,0 +1,43 @@
+package fr.fullstack.shopapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalTime;
+
+/**
+ * Opening of a merged weekly schedule, the closing can be on a later day.
+ */
+public class ScheduleInterval {
+    @JsonFormat(pattern = "HH:mm:ss")
+    private final LocalTime closeAt;
+
+    private final int closeDay;
+
+    @JsonFormat(pattern = "HH:mm:ss")
+    private final LocalTime openAt;
+
+    private final int openDay;
+
+    public ScheduleInterval(int openDay, LocalTime openAt, int closeDay, LocalTime closeAt) {
+        this.openDay = openDay;
+        this.openAt = openAt;
+        this.closeDay = closeDay;
+        this.closeAt = closeAt;
+    }
+
+    public LocalTime getCloseAt() {
+        return closeAt;
+    }
+
+    public int getCloseDay() {
+        return closeDay;
+    }
+
+    public LocalTime getOpenAt() {
+        return openAt;
+    }
+
+    public int getOpenDay() {
+        return openDay;
+    }
+}
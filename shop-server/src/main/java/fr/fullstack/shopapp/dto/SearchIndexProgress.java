@@ -0,0 +1,24 @@
+package fr.fullstack.shopapp.dto;
+
+import fr.fullstack.shopapp.model.SearchIndexState;
+
+import java.util.List;
+
+public class SearchIndexProgress {
+    private final boolean running;
+
+    private final List<SearchIndexState> indexes;
+
+    public SearchIndexProgress(boolean running, List<SearchIndexState> indexes) {
+        this.running = running;
+        this.indexes = indexes;
+    }
+
+    public List<SearchIndexState> getIndexes() {
+        return indexes;
+    }
+
+    public boolean getRunning() {
+        return running;
+    }
+}
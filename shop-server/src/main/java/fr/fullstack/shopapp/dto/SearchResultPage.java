@@ -0,0 +1,34 @@
+package fr.fullstack.shopapp.dto;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Page of search hits with the facets computed by the same Elasticsearch request:
+ * for each facet, the number of hits by value.
+ * When totalExact is false, the total is only a lower bound (see shop.search.track-total-hits).
+ */
+public class SearchResultPage<T> extends PageImpl<T> {
+    private final Map<String, Map<?, Long>> facets;
+
+    private final boolean totalExact;
+
+    public SearchResultPage(
+            List<T> content, Pageable pageable, long total, boolean totalExact, Map<String, Map<?, Long>> facets
+    ) {
+        super(content, pageable, total);
+        this.totalExact = totalExact;
+        this.facets = facets;
+    }
+
+    public Map<String, Map<?, Long>> getFacets() {
+        return facets;
+    }
+
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+}
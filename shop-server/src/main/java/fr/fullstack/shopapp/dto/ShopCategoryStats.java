@@ -0,0 +1,30 @@
+package fr.fullstack.shopapp.dto;
+
+/**
+ * Number of products of a shop in a category, read from the analytics_shop_category_stats view.
+ */
+public class ShopCategoryStats {
+    private final long categoryId;
+
+    private final String categoryName;
+
+    private final long nbProducts;
+
+    public ShopCategoryStats(long categoryId, String categoryName, long nbProducts) {
+        this.categoryId = categoryId;
+        this.categoryName = categoryName;
+        this.nbProducts = nbProducts;
+    }
+
+    public long getCategoryId() {
+        return categoryId;
+    }
+
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+    public long getNbProducts() {
+        return nbProducts;
+    }
+}
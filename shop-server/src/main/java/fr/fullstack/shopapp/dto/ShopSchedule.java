@@ -0,0 +1,59 @@
+package fr.fullstack.shopapp.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Weekly schedule of a shop and its state at a given time (local time of the shops):
+ * nextOpening is null when the shop is open or never opens, nextClosing is null
+ * when the shop is closed or never closes.
+ */
+public class ShopSchedule {
+    private final LocalDateTime at;
+
+    private final List<ScheduleInterval> intervals;
+
+    private final LocalDateTime nextClosing;
+
+    private final LocalDateTime nextOpening;
+
+    private final boolean open;
+
+    private final long shopId;
+
+    public ShopSchedule(
+            long shopId, LocalDateTime at, boolean open,
+            LocalDateTime nextOpening, LocalDateTime nextClosing, List<ScheduleInterval> intervals
+    ) {
+        this.shopId = shopId;
+        this.at = at;
+        this.open = open;
+        this.nextOpening = nextOpening;
+        this.nextClosing = nextClosing;
+        this.intervals = intervals;
+    }
+
+    public LocalDateTime getAt() {
+        return at;
+    }
+
+    public List<ScheduleInterval> getIntervals() {
+        return intervals;
+    }
+
+    public LocalDateTime getNextClosing() {
+        return nextClosing;
+    }
+
+    public LocalDateTime getNextOpening() {
+        return nextOpening;
+    }
+
+    public boolean getOpen() {
+        return open;
+    }
+
+    public long getShopId() {
+        return shopId;
+    }
+}
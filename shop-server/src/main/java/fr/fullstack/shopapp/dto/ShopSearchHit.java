@@ -0,0 +1,60 @@
+package fr.fullstack.shopapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDate;
+
+/**
+ * Shop search hit built from the fields stored in Elasticsearch.
+ */
+public class ShopSearchHit {
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private final LocalDate createdAt;
+
+    private final long id;
+
+    private final boolean inVacations;
+
+    private final String name;
+
+    private final long nbProducts;
+
+    // days and hours of opening, e.g. "1 09:00-18:00, 2 09:00-12:00"
+    private final String openingHours;
+
+    public ShopSearchHit(
+            Long id, String name, LocalDate createdAt,
+            Boolean inVacations, Long nbProducts, String openingHours
+    ) {
+        this.id = id;
+        this.name = name;
+        this.createdAt = createdAt;
+        this.inVacations = inVacations != null && inVacations;
+        this.nbProducts = nbProducts == null ? 0 : nbProducts;
+        this.openingHours = openingHours;
+    }
+
+    public LocalDate getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public boolean getInVacations() {
+        return inVacations;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getNbProducts() {
+        return nbProducts;
+    }
+
+    public String getOpeningHours() {
+        return openingHours;
+    }
+}
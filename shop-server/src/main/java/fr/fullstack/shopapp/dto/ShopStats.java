@@ -0,0 +1,62 @@
+package fr.fullstack.shopapp.dto;
+
+/**
+ * Statistics of a shop, read from the analytics_shop_stats view. The prices are
+ * null for a shop without products.
+ */
+public class ShopStats {
+    private final Double avgPrice;
+
+    private final Double maxPrice;
+
+    private final Double minPrice;
+
+    private final String name;
+
+    private final long nbCategories;
+
+    private final long nbProducts;
+
+    private final long shopId;
+
+    public ShopStats(
+            long shopId, String name, long nbProducts, long nbCategories,
+            Double minPrice, Double avgPrice, Double maxPrice
+    ) {
+        this.shopId = shopId;
+        this.name = name;
+        this.nbProducts = nbProducts;
+        this.nbCategories = nbCategories;
+        this.minPrice = minPrice;
+        this.avgPrice = avgPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    public Double getAvgPrice() {
+        return avgPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getNbCategories() {
+        return nbCategories;
+    }
+
+    public long getNbProducts() {
+        return nbProducts;
+    }
+
+    public long getShopId() {
+        return shopId;
+    }
+}
@@ -0,0 +1,23 @@
+package fr.fullstack.shopapp.dto;
+
+/**
+ * Shop name proposed while typing, read from the shops index.
+ */
+public class ShopSuggestion {
+    private final long id;
+
+    private final String name;
+
+    public ShopSuggestion(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,25 @@
+package fr.fullstack.shopapp.dto;
+
+import java.time.YearMonth;
+
+/**
+ * Number of shops created in a month, read from the analytics_shops_per_month view.
+ */
+public class ShopsPerMonth {
+    private final YearMonth month;
+
+    private final long nbShops;
+
+    public ShopsPerMonth(YearMonth month, long nbShops) {
+        this.month = month;
+        this.nbShops = nbShops;
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    public long getNbShops() {
+        return nbShops;
+    }
+}
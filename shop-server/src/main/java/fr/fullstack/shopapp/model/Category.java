@@ -1,7 +1,18 @@
 package fr.fullstack.shopapp.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CurrentTimestamp;
+import org.hibernate.annotations.SQLRestriction;
+import org.hibernate.annotations.SourceType;
+import org.hibernate.search.engine.backend.types.Aggregable;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.GenericField;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.KeywordField;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -10,12 +21,17 @@ import jakarta.persistence.Id;
 import jakarta.persistence.Index;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "category")
+@SQLRestriction("deleted_at is null")
 @Table(
     name = "categories",
     indexes = @Index(name = "idx_category_name", columnList = "name")
@@ -23,17 +39,38 @@ import java.util.List;
 public class Category {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
+    @GenericField(aggregable = Aggregable.YES)
     private long id;
 
     @Size(min = 1, max = 255, message = "Le nom doit être compris entre 1 et 255 caractères")
     @NotNull(message = "Le nom peut ne pas être nul")
     @Column(nullable = false, unique = true) // unique est ajouter pour eviter les doublons
+    @KeywordField
     private String name;
 
     @ManyToMany(mappedBy = "categories")
     @JsonIgnore
     private List<Product> products = new ArrayList<Product>();
 
+    // version of the row, the ETag of the category and of the lists containing it (see ETags).
+    // Set by the database clock, as the versions written by the bulk updates
+    @Version
+    @CurrentTimestamp(source = SourceType.DB)
+    @Column(nullable = false)
+    @ColumnDefault("current_timestamp")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant version;
+
+    // tombstone (shop.deletes.tombstones=true): the category is hidden from the reads at once,
+    // DeletionPurgeService removes its relations and its row later
+    @Column(name = "deleted_at")
+    @JsonIgnore
+    private Instant deletedAt;
+
+    public Instant getDeletedAt() {
+        return deletedAt;
+    }
+
     public long getId() {
         return id;
     }
@@ -46,6 +83,14 @@ public class Category {
         return products;
     }
 
+    public Instant getVersion() {
+        return version;
+    }
+
+    public void setDeletedAt(Instant deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
     public void setId(long id) {
         this.id = id;
     }
@@ -57,4 +102,8 @@ public class Category {
     public void setProducts(List<Product> products) {
         this.products = products;
     }
+
+    public void setVersion(Instant version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,153 @@
+package fr.fullstack.shopapp.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Progress of a bulk import, updated in the transaction of each written chunk.
+ */
+@Entity
+@Table(name = "import_jobs")
+public class ImportJob {
+    // input rows already handled by a committed chunk: an import resumed from this job skips them
+    @Column(name = "committed_rows", nullable = false)
+    private long committedRows;
+
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
+    @Column(nullable = false)
+    private String format;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private long id;
+
+    @Column(name = "imported_rows", nullable = false)
+    private long importedRows;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "rejected_rows", nullable = false)
+    private long rejectedRows;
+
+    @Column(name = "rows_per_second", nullable = false)
+    private double rowsPerSecond;
+
+    @Column
+    private String source;
+
+    @Column(name = "started_at", nullable = false)
+    private Instant startedAt;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private ImportJobStatus status;
+
+    @Column(nullable = false)
+    private String target;
+
+    public long getCommittedRows() {
+        return committedRows;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getImportedRows() {
+        return importedRows;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public long getRejectedRows() {
+        return rejectedRows;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public ImportJobStatus getStatus() {
+        return status;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setCommittedRows(long committedRows) {
+        this.committedRows = committedRows;
+    }
+
+    public void setCompletedAt(Instant completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public void setImportedRows(long importedRows) {
+        this.importedRows = importedRows;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public void setRejectedRows(long rejectedRows) {
+        this.rejectedRows = rejectedRows;
+    }
+
+    public void setRowsPerSecond(double rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public void setStatus(ImportJobStatus status) {
+        this.status = status;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+}
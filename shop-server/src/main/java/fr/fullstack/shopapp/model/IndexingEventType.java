@@ -0,0 +1,5 @@
+package fr.fullstack.shopapp.model;
+
+public enum IndexingEventType {
+    ADD_OR_UPDATE, DELETE
+}
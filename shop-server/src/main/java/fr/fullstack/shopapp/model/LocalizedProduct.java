@@ -1,17 +1,23 @@
 package fr.fullstack.shopapp.model;
 
 import fr.fullstack.shopapp.validation.StringEnumeration;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "localized-product")
 @Table(name = "LocalizedProduct")
 public class LocalizedProduct {
     @Column
@@ -19,7 +25,8 @@ public class LocalizedProduct {
     private String description;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "localized_product_seq")
+    @SequenceGenerator(name = "localized_product_seq", sequenceName = "localized_product_seq", allocationSize = 50)
     private long id;
 
     @Column(nullable = false)
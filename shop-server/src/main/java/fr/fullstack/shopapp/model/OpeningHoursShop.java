@@ -1,12 +1,21 @@
 package fr.fullstack.shopapp.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import fr.fullstack.shopapp.util.WeekMinutes;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.GenericField;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
@@ -14,7 +23,14 @@ import jakarta.validation.constraints.NotNull;
 import java.time.LocalTime;
 
 @Entity
-@Table(name = "openingHours")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "opening-hours")
+@Table(
+    name = "openingHours",
+    indexes = {
+        @Index(name = "idx_opening_hours_week_minutes", columnList = "start_minute, end_minute")
+    }
+)
 public class OpeningHoursShop {
     @Column(nullable = false)
     @JsonFormat(pattern = "HH:mm:ss")
@@ -27,6 +43,12 @@ public class OpeningHoursShop {
     @Max(value = 7, message = "Nombre de jour ne doit pas être supérieure à 7")
     private int day;
 
+    // closing as a minute of the week, after startMinute: can be past sunday midnight (up to 11519)
+    @Column(name = "end_minute")
+    @JsonIgnore
+    @GenericField
+    private Integer endMinute;
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     private long id;
@@ -36,6 +58,12 @@ public class OpeningHoursShop {
     @NotNull(message = "Heure d'ouverture ne peut pas être nulle")
     private LocalTime openAt;
 
+    // opening as a minute of the week, see WeekMinutes
+    @Column(name = "start_minute")
+    @JsonIgnore
+    @GenericField
+    private Integer startMinute;
+
     public LocalTime getCloseAt() {
         return closeAt;
     }
@@ -44,6 +72,10 @@ public class OpeningHoursShop {
         return day;
     }
 
+    public Integer getEndMinute() {
+        return endMinute;
+    }
+
     public long getId() {
         return id;
     }
@@ -52,6 +84,10 @@ public class OpeningHoursShop {
         return openAt;
     }
 
+    public Integer getStartMinute() {
+        return startMinute;
+    }
+
     public void setCloseAt(LocalTime closeAt) {
         this.closeAt = closeAt;
     }
@@ -67,4 +103,11 @@ public class OpeningHoursShop {
     public void setOpenAt(LocalTime openAt) {
         this.openAt = openAt;
     }
+
+    @PrePersist
+    @PreUpdate
+    void computeWeekMinutes() {
+        startMinute = WeekMinutes.of(day, openAt);
+        endMinute = WeekMinutes.closing(day, openAt, closeAt);
+    }
 }
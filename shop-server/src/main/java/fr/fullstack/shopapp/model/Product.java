@@ -1,5 +1,22 @@
 package fr.fullstack.shopapp.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fr.fullstack.shopapp.search.LocalizedTextBinder;
+import fr.fullstack.shopapp.util.Prices;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CurrentTimestamp;
+import org.hibernate.annotations.SourceType;
+import org.hibernate.search.engine.backend.types.Sortable;
+import org.hibernate.search.mapper.pojo.bridge.mapping.annotation.PropertyBinderRef;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.GenericField;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.Indexed;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.IndexedEmbedded;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.PropertyBinding;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -12,19 +29,32 @@ import jakarta.persistence.JoinTable;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.Valid;
-import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.PositiveOrZero;
 import jakarta.validation.constraints.Size;
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
 @Table(
     name = "products",
-    indexes = @Index(name = "idx_shop_id", columnList = "shop_id")
+    indexes = {
+        @Index(name = "idx_shop_id", columnList = "shop_id"),
+        @Index(name = "idx_product_shop_id_id", columnList = "shop_id, id"),
+        // price range and price sort of the products of a shop (or of all the products)
+        @Index(name = "idx_product_shop_price_id", columnList = "shop_id, price_minor, id"),
+        @Index(name = "idx_product_price_id", columnList = "price_minor, id"),
+        @Index(name = "idx_product_version", columnList = "version")
+    }
 )
+@Indexed
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "product")
 public class Product {
     @ManyToMany
     @JoinTable(
@@ -36,24 +66,41 @@ public class Product {
             @Index(name = "idx_category_id", columnList = "category_id")
         }
     )
+    @IndexedEmbedded(includePaths = {"id", "name"})
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "product-categories")
     private List<Category> categories = new ArrayList<Category>();
 
+    // pooled sequence: one round-trip allocates 50 ids, needed by the jdbc batches
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = 50)
     private long id;
 
     @OneToMany(cascade = {CascadeType.ALL}, orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "product-localized")
+    @PropertyBinding(binder = @PropertyBinderRef(type = LocalizedTextBinder.class))
     @Size(min = 1, message = "Au moins un nom et une description doivent être fournis")
     private List<@Valid LocalizedProduct> localizedProduct = new ArrayList<LocalizedProduct>();
 
-    @Column(nullable = false)
+    // price in cents, sent to the clients as a decimal price (see Prices)
+    @Column(name = "price_minor", nullable = false)
     @PositiveOrZero(message = "Le prix doit être positif")
-    @NotNull(message = "Le prix peut ne pas être nul")
-    private float price;
+    @GenericField(sortable = Sortable.YES)
+    @JsonIgnore
+    private long priceMinor;
 
     @ManyToOne
     private Shop shop;
 
+    // version of the row, the ETag of the product and of the lists containing it (see ETags).
+    // Set by the database clock, as the versions written by the bulk updates
+    @Version
+    @CurrentTimestamp(source = SourceType.DB)
+    @Column(nullable = false)
+    @ColumnDefault("current_timestamp")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant version;
+
     public List<Category> getCategories() {
         return categories;
     }
@@ -66,12 +113,22 @@ public class Product {
         return localizedProduct;
     }
 
-    public float getPrice() {
-        return price;
+    public BigDecimal getPrice() {
+        return Prices.toDecimal(priceMinor);
+    }
+
+    public long getPriceMinor() {
+        return priceMinor;
     }
 
+    // a tombstoned shop is already deleted for the clients and in the search index
+    @IndexedEmbedded(includePaths = {"id", "name", "inVacations"})
     public Shop getShop() {
-        return shop;
+        return shop == null || shop.getDeletedAt() != null ? null : shop;
+    }
+
+    public Instant getVersion() {
+        return version;
     }
 
     public void setCategories(List<Category> categories) {
@@ -86,11 +143,19 @@ public class Product {
         this.localizedProduct = localizedProduct;
     }
 
-    public void setPrice(float price) {
-        this.price = price;
+    public void setPrice(BigDecimal price) {
+        this.priceMinor = Prices.toMinor(price);
+    }
+
+    public void setPriceMinor(long priceMinor) {
+        this.priceMinor = priceMinor;
     }
 
     public void setShop(Shop shop) {
         this.shop = shop;
     }
+
+    public void setVersion(Instant version) {
+        this.version = version;
+    }
 }
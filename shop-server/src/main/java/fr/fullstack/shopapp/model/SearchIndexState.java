@@ -0,0 +1,132 @@
+package fr.fullstack.shopapp.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Progress of the last rebuild of an Elasticsearch index, used to resume an
+ * interrupted rebuild and to skip the rebuild when the index was built by the
+ * current mapping version.
+ */
+@Entity
+@Table(name = "search_index_state")
+public class SearchIndexState {
+    // IndexedEntities.MAPPING_VERSION of the last build
+    @Column(name = "build_version")
+    private Integer buildVersion;
+
+    // last entity id indexed in the target index
+    @Column(name = "checkpoint_id", nullable = false)
+    private long checkpointId;
+
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
+    @Id
+    @Column(name = "entity_name")
+    private String entityName;
+
+    @Column(name = "indexed_count", nullable = false)
+    private long indexedCount;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "started_at")
+    private Instant startedAt;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private SearchIndexStatus status;
+
+    @Column(name = "target_index")
+    private String targetIndex;
+
+    @Column(name = "total_count", nullable = false)
+    private long totalCount;
+
+    public Integer getBuildVersion() {
+        return buildVersion;
+    }
+
+    public long getCheckpointId() {
+        return checkpointId;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public long getIndexedCount() {
+        return indexedCount;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public SearchIndexStatus getStatus() {
+        return status;
+    }
+
+    public String getTargetIndex() {
+        return targetIndex;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setBuildVersion(Integer buildVersion) {
+        this.buildVersion = buildVersion;
+    }
+
+    public void setCheckpointId(long checkpointId) {
+        this.checkpointId = checkpointId;
+    }
+
+    public void setCompletedAt(Instant completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public void setEntityName(String entityName) {
+        this.entityName = entityName;
+    }
+
+    public void setIndexedCount(long indexedCount) {
+        this.indexedCount = indexedCount;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public void setStatus(SearchIndexStatus status) {
+        this.status = status;
+    }
+
+    public void setTargetIndex(String targetIndex) {
+        this.targetIndex = targetIndex;
+    }
+
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+}
@@ -2,13 +2,27 @@ package fr.fullstack.shopapp.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
-import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.CurrentTimestamp;
+import org.hibernate.annotations.SQLRestriction;
+import org.hibernate.annotations.SourceType;
+import org.hibernate.search.engine.backend.types.Aggregable;
+import org.hibernate.search.engine.backend.types.ObjectStructure;
+import org.hibernate.search.engine.backend.types.Projectable;
+import org.hibernate.search.engine.backend.types.Searchable;
 import org.hibernate.search.engine.backend.types.Sortable;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.FullTextField;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.GenericField;
+import org.hibernate.search.mapper.pojo.automaticindexing.ReindexOnUpdate;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.Indexed;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.IndexedEmbedded;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.IndexingDependency;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -16,58 +30,108 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.KeywordField;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 
 @Entity
-@Table(name = "shops")
+@Table(
+    name = "shops",
+    indexes = {
+        @Index(name = "idx_shop_nb_products", columnList = "nb_products DESC, id"),
+        @Index(name = "idx_shop_name_id", columnList = "name, id"),
+        @Index(name = "idx_shop_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_shop_version", columnList = "version")
+    }
+)
 @Indexed
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "shop")
+@SQLRestriction("deleted_at is null")
 public class Shop {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
+    @GenericField(aggregable = Aggregable.YES)
     private long id;
 
     @Column(nullable = false)
     @Size(min = 1, max = 255, message = "Name must be between 1 and 255 characters")
     @NotNull(message = "Name may not be null")
-    @FullTextField(analyzer = "custom_analyzer")
+    @FullTextField(analyzer = "custom_analyzer", projectable = Projectable.YES)
     @KeywordField(name = "name_sort", normalizer = "custom_normalizer")
+    @FullTextField(name = "name_suggest", analyzer = "autocomplete_indexing", searchAnalyzer = "autocomplete_search")
     private String name;
 
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     @JsonFormat(pattern = "yyyy-MM-dd")
-    @GenericField
+    @GenericField(projectable = Projectable.YES)
     private LocalDate createdAt;
 
     @Column(nullable = false)
     @NotNull(message = "InVacations may not be null")
-    @GenericField
+    @GenericField(projectable = Projectable.YES)
     private boolean inVacations;
 
-    @Formula(value = "(SELECT COUNT(*) FROM products p WHERE p.shop_id = id)")
-    private Long nbProducts;
+    // counters maintained by ShopCounterService, never written from the entity itself
+    @Column(name = "nb_products", nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @GenericField(projectable = Projectable.YES, sortable = Sortable.YES)
+    private long nbProducts;
+
+    @Column(name = "nb_categories", nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long nbCategories;
 
     @OneToMany(cascade = {CascadeType.ALL})
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "shop-opening-hours")
+    // nested: an "open at" query must match the start and the end of the same interval
+    @IndexedEmbedded(structure = ObjectStructure.NESTED, includePaths = {"startMinute", "endMinute"})
+    @IndexingDependency(reindexOnUpdate = ReindexOnUpdate.SHALLOW)
     private List<@Valid OpeningHoursShop> openingHours = new ArrayList<OpeningHoursShop>();
 
     @OneToMany(mappedBy = "shop", fetch = FetchType.LAZY)
     @JsonIgnore
     private List<Product> products = new ArrayList<Product>();
 
+    // version of the row, the ETag of the shop and of the lists containing it (see ETags).
+    // Set by the database clock, as the versions written by the bulk updates
+    @Version
+    @CurrentTimestamp(source = SourceType.DB)
+    @Column(nullable = false)
+    @ColumnDefault("current_timestamp")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant version;
+
+    // tombstone (shop.deletes.tombstones=true): the shop is hidden from the reads at once,
+    // DeletionPurgeService removes its relations and its row later
+    @Column(name = "deleted_at")
+    @JsonIgnore
+    private Instant deletedAt;
+
     public LocalDate getCreatedAt() {
         return createdAt;
     }
 
+    public Instant getDeletedAt() {
+        return deletedAt;
+    }
+
     public long getId() {
         return id;
     }
@@ -80,6 +144,10 @@ public class Shop {
         return name;
     }
 
+    public long getNbCategories() {
+        return nbCategories;
+    }
+
     public long getNbProducts() {
         return nbProducts;
     }
@@ -88,10 +156,30 @@ public class Shop {
         return openingHours;
     }
 
+    // stored in the index for the search projections, reindexed by the outbox on every shop write
+    @JsonIgnore
+    @KeywordField(projectable = Projectable.YES, searchable = Searchable.NO)
+    @IndexingDependency(reindexOnUpdate = ReindexOnUpdate.NO)
+    public String getOpeningHoursSummary() {
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("HH:mm");
+        return openingHours.stream()
+                .map(hours -> hours.getDay() + " " + hours.getOpenAt().format(format)
+                        + "-" + hours.getCloseAt().format(format))
+                .collect(Collectors.joining(", "));
+    }
+
     public List<Product> getProducts() {
         return this.products;
     }
 
+    public Instant getVersion() {
+        return version;
+    }
+
+    public void setDeletedAt(Instant deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
     public void setId(long id) {
         this.id = id;
     }
@@ -104,6 +192,10 @@ public class Shop {
         this.name = name;
     }
 
+    public void setNbCategories(long nbCategories) {
+        this.nbCategories = nbCategories;
+    }
+
     public void setNbProducts(long nbProducts) {
         this.nbProducts = nbProducts;
     }
@@ -115,4 +207,8 @@ public class Shop {
     public void setProducts(List<Product> products) {
         this.products = products;
     }
+
+    public void setVersion(Instant version) {
+        this.version = version;
+    }
 }
\ No newline at end of file
@@ -1,10 +1,58 @@
 package fr.fullstack.shopapp.repository;
 
 import fr.fullstack.shopapp.model.Category;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface CategoryRepository extends JpaRepository<Category, Long> {
+    // categories are rarely modified: the pages and their count are kept in the query cache
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "category-list")
+    })
     Page<Category> findByOrderByIdAsc(Pageable pageable);
+
+    @Query("SELECT c.id FROM Category c WHERE c.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // VERSIONS (ETags): read from the database at each request, never cached
+    @Query("SELECT c.version FROM Category c WHERE c.id = :id")
+    Optional<Instant> findVersionById(@Param("id") long id);
+
+    // change counter of the table (table-changes.sql)
+    @Query(value = "SELECT COALESCE(MAX(change), 0) FROM table_changes WHERE name = 'categories'",
+           nativeQuery = true)
+    long findTableChange();
+
+    // DELETES: the tombstoned categories are hidden from the JPQL queries, the purge uses native ones
+    @Modifying
+    @Query("UPDATE Category c SET c.deletedAt = CURRENT_TIMESTAMP, c.version = CURRENT_TIMESTAMP WHERE c.id = :id")
+    int markDeleted(@Param("id") long id);
+
+    @Query(value = "SELECT id FROM categories WHERE deleted_at IS NOT NULL ORDER BY id", nativeQuery = true)
+    List<Long> findDeletedIds();
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "categories"))
+    @Query(value = "DELETE FROM categories WHERE id = :id AND deleted_at IS NOT NULL", nativeQuery = true)
+    int deleteTombstone(@Param("id") long id);
+
+    // KEYSET
+    Window<Category> findAllBy(ScrollPosition position, Sort sort, Limit limit);
 }
@@ -0,0 +1,7 @@
+package fr.fullstack.shopapp.repository;
+
+import fr.fullstack.shopapp.model.ImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ImportJobRepository extends JpaRepository<ImportJob, Long> {
+}
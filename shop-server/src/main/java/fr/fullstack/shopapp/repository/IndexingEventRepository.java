@@ -0,0 +1,98 @@
+package fr.fullstack.shopapp.repository;
+
+import fr.fullstack.shopapp.model.IndexingEvent;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+// the native INSERTs declare the indexing_outbox table as their query space,
+// otherwise Hibernate would evict every second-level cache region on each of them
+public interface IndexingEventRepository extends JpaRepository<IndexingEvent, Long> {
+    long countByAttemptsGreaterThanEqual(int maxAttempts);
+
+    long countByAttemptsLessThan(int maxAttempts);
+
+    @Modifying
+    @Query("DELETE FROM IndexingEvent e WHERE e.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    // SKIP LOCKED lets several instances drain the outbox without processing the same events,
+    // the events which failed wait for their next attempt
+    @Query(value = "SELECT * FROM indexing_outbox WHERE attempts < :maxAttempts "
+            + "AND (next_attempt_at IS NULL OR next_attempt_at <= now()) ORDER BY id "
+            + "LIMIT :batchSize FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<IndexingEvent> lockPendingBatch(@Param("maxAttempts") int maxAttempts, @Param("batchSize") int batchSize);
+
+    @Query(value = "SELECT * FROM indexing_outbox WHERE id = :id AND attempts < :maxAttempts "
+            + "FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<IndexingEvent> lockPending(@Param("id") long id, @Param("maxAttempts") int maxAttempts);
+
+    // exponential backoff: backoff * 2^attempts, at most maxBackoff
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "indexing_outbox"))
+    @Query(value = "UPDATE indexing_outbox SET attempts = attempts + 1, last_error = :error, "
+            + "next_attempt_at = now() + LEAST(:maxBackoff, :backoff * power(2, attempts)) * interval '1 millisecond' "
+            + "WHERE id IN :ids",
+           nativeQuery = true)
+    int markFailed(
+            @Param("ids") Collection<Long> ids, @Param("error") String error,
+            @Param("backoff") long backoffMillis, @Param("maxBackoff") long maxBackoffMillis
+    );
+
+    // the events not attempted wait as long as the event which failed last, without being charged an attempt
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "indexing_outbox"))
+    @Query(value = "UPDATE indexing_outbox SET last_error = :error, next_attempt_at = "
+            + "(SELECT f.next_attempt_at FROM indexing_outbox f WHERE f.id = :failedId) "
+            + "WHERE id IN :ids",
+           nativeQuery = true)
+    int postpone(@Param("ids") Collection<Long> ids, @Param("error") String error, @Param("failedId") long failedId);
+
+    @Query("SELECT MIN(e.createdAt) FROM IndexingEvent e WHERE e.attempts < :maxAttempts")
+    Instant findOldestPendingCreatedAt(@Param("maxAttempts") int maxAttempts);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "indexing_outbox"))
+    @Query(value = "INSERT INTO indexing_outbox (entity_type, entity_id, type, created_at, attempts) "
+            + "SELECT 'Product', p.id, 'ADD_OR_UPDATE', now(), 0 FROM products p",
+           nativeQuery = true)
+    int enqueueAllProducts();
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "indexing_outbox"))
+    @Query(value = "INSERT INTO indexing_outbox (entity_type, entity_id, type, created_at, attempts) "
+            + "SELECT 'Shop', s.id, 'ADD_OR_UPDATE', now(), 0 FROM shops s",
+           nativeQuery = true)
+    int enqueueAllShops();
+
+    // products embed the name of their categories and of their shop
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "indexing_outbox"))
+    @Query(value = "INSERT INTO indexing_outbox (entity_type, entity_id, type, created_at, attempts) "
+            + "SELECT 'Product', pc.product_id, 'ADD_OR_UPDATE', now(), 0 FROM products_categories pc "
+            + "WHERE pc.category_id = :categoryId",
+           nativeQuery = true)
+    int enqueueProductsOfCategory(@Param("categoryId") long categoryId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "indexing_outbox"))
+    @Query(value = "INSERT INTO indexing_outbox (entity_type, entity_id, type, created_at, attempts) "
+            + "SELECT 'Product', p.id, 'ADD_OR_UPDATE', now(), 0 FROM products p WHERE p.shop_id = :shopId",
+           nativeQuery = true)
+    int enqueueProductsOfShop(@Param("shopId") long shopId);
+
+    @Modifying
+    @Query("UPDATE IndexingEvent e SET e.attempts = 0, e.lastError = NULL, e.nextAttemptAt = NULL "
+            + "WHERE e.attempts >= :maxAttempts")
+    int resetFailed(@Param("maxAttempts") int maxAttempts);
+}
@@ -1,19 +1,196 @@
 package fr.fullstack.shopapp.repository;
 
 import fr.fullstack.shopapp.model.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// The lists fetch the shop of the products in the same query; their localized
+// products and categories are loaded by batches (hibernate.default_batch_fetch_size).
+// The lists of a shop join it: a tombstoned shop (deleted_at) has no products anymore
 public interface ProductRepository extends JpaRepository<Product, Long> {
+    @EntityGraph(attributePaths = "shop")
     Page<Product> findByOrderByIdAsc(Pageable pageable);
 
-    @Query(value = "SELECT * FROM Products WHERE shop_id = ?1", nativeQuery = true)
+    @Query(value = "SELECT p FROM Product p JOIN FETCH p.shop s WHERE s.id = ?1 AND s.deletedAt IS NULL",
+           countQuery = "SELECT COUNT(p) FROM Product p JOIN p.shop s WHERE s.id = ?1 AND s.deletedAt IS NULL")
     Page<Product> findByShop(Long shopId, Pageable pageable);
 
-    @Query(value = "SELECT * FROM Products p WHERE p.shop_id = ?1 AND p.id IN (SELECT pc.product_id FROM "
-            + "products_categories pc WHERE pc.category_id = ?2)",
-           nativeQuery = true)
+    @Query(value = "SELECT p FROM Product p JOIN FETCH p.shop s JOIN p.categories c "
+                   + "WHERE s.id = ?1 AND s.deletedAt IS NULL AND c.id = ?2",
+           countQuery = "SELECT COUNT(p) FROM Product p JOIN p.shop s JOIN p.categories c "
+                   + "WHERE s.id = ?1 AND s.deletedAt IS NULL AND c.id = ?2")
     Page<Product> findByShopAndCategory(Long shopId, Long categoryId, Pageable pageable);
+
+    // PRICE: range scans of idx_product_shop_price_id (shop_id, price_minor, id), or of
+    // idx_product_price_id without shop; the sort is given by the pageable (price then id)
+    @EntityGraph(attributePaths = "shop")
+    @Query(value = "SELECT p FROM Product p WHERE p.priceMinor BETWEEN :min AND :max",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.priceMinor BETWEEN :min AND :max")
+    Page<Product> findByPrice(@Param("min") long min, @Param("max") long max, Pageable pageable);
+
+    @Query(value = "SELECT p FROM Product p JOIN FETCH p.shop s "
+                   + "WHERE s.id = :shopId AND s.deletedAt IS NULL AND p.priceMinor BETWEEN :min AND :max",
+           countQuery = "SELECT COUNT(p) FROM Product p JOIN p.shop s "
+                   + "WHERE s.id = :shopId AND s.deletedAt IS NULL AND p.priceMinor BETWEEN :min AND :max")
+    Page<Product> findByShopAndPrice(
+            @Param("shopId") long shopId, @Param("min") long min, @Param("max") long max, Pageable pageable
+    );
+
+    @Query(value = "SELECT p FROM Product p JOIN FETCH p.shop s JOIN p.categories c "
+                   + "WHERE s.id = :shopId AND s.deletedAt IS NULL AND c.id = :categoryId "
+                   + "AND p.priceMinor BETWEEN :min AND :max",
+           countQuery = "SELECT COUNT(p) FROM Product p JOIN p.shop s JOIN p.categories c "
+                   + "WHERE s.id = :shopId AND s.deletedAt IS NULL AND c.id = :categoryId "
+                   + "AND p.priceMinor BETWEEN :min AND :max")
+    Page<Product> findByShopAndCategoryAndPrice(
+            @Param("shopId") long shopId, @Param("categoryId") long categoryId,
+            @Param("min") long min, @Param("max") long max, Pageable pageable
+    );
+
+    // [min, max] price of the products of a shop, read at both ends of the index
+    @Query("SELECT MIN(p.priceMinor), MAX(p.priceMinor) FROM Product p JOIN p.shop s "
+            + "WHERE s.id = :shopId AND s.deletedAt IS NULL")
+    List<Object[]> findPriceBoundsByShop(@Param("shopId") long shopId);
+
+    // [bucket number, number of products], only the non empty buckets, with an index only scan; the
+    // products written since the bounds were read are outside of [min, max] and left out
+    @Query(value = "SELECT (price_minor - :min) / :width AS bucket, COUNT(*) AS nb_products FROM products "
+            + "WHERE shop_id = :shopId AND price_minor BETWEEN :min AND :max GROUP BY 1 ORDER BY 1",
+            nativeQuery = true)
+    List<Object[]> countByPriceBucket(
+            @Param("shopId") long shopId, @Param("min") long min, @Param("max") long max,
+            @Param("width") long width
+    );
+
+    // KEYSET
+    @EntityGraph(attributePaths = "shop")
+    Window<Product> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    @EntityGraph(attributePaths = "shop")
+    Window<Product> findByShopIdAndShopDeletedAtIsNull(Long shopId, ScrollPosition position, Sort sort, Limit limit);
+
+    @EntityGraph(attributePaths = "shop")
+    Window<Product> findByShopIdAndShopDeletedAtIsNullAndCategoriesId(
+            Long shopId, Long categoryId,
+            ScrollPosition position, Sort sort, Limit limit
+    );
+
+    @Query("SELECT DISTINCT p.shop.id FROM Product p JOIN p.categories c WHERE c.id = ?1")
+    List<Long> findShopIdsByCategory(Long categoryId);
+
+    // VERSIONS (ETags): a product is sent with its shop and its categories, its version is
+    // the last one of the three. Read from the database at each request, never cached
+    @Query("SELECT GREATEST(p.version, COALESCE(s.version, p.version), COALESCE(MAX(c.version), p.version)) "
+            + "FROM Product p LEFT JOIN p.shop s LEFT JOIN p.categories c WHERE p.id = :id "
+            + "GROUP BY p.id, p.version, s.version")
+    Optional<Instant> findVersionById(@Param("id") long id);
+
+    // change counters of the tables in the JSON of the products (table-changes.sql)
+    @Query(value = "SELECT CAST(COALESCE(SUM(change), 0) AS int8) FROM table_changes "
+            + "WHERE name IN ('products', 'shops', 'categories')",
+           nativeQuery = true)
+    long findTablesChange();
+
+    @Query(value = "SELECT CAST(COALESCE(SUM(change), 0) AS int8) FROM table_changes "
+            + "WHERE name IN ('products/shop/' || :shopId, 'shops/shop/' || :shopId, 'categories')",
+           nativeQuery = true)
+    long findTablesChangeByShop(@Param("shopId") long shopId);
+
+    // new version for a change of the localized products only, which are rows of their own
+    @Modifying
+    @Query("UPDATE Product p SET p.version = CURRENT_TIMESTAMP WHERE p.id = :id")
+    int incrementVersion(@Param("id") long id);
+
+    // DELETES of shops and categories: one statement for all their products, or chunks of
+    // product ids for the purge of the tombstones
+    @Modifying
+    @Query("UPDATE Product p SET p.shop = null, p.version = CURRENT_TIMESTAMP WHERE p.shop.id = :shopId")
+    int detachAllFromShop(@Param("shopId") long shopId);
+
+    @Modifying
+    @Query("UPDATE Product p SET p.shop = null, p.version = CURRENT_TIMESTAMP WHERE p.id IN :ids")
+    int detachFromShop(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "SELECT id FROM products WHERE shop_id = :shopId ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Long> findIdsByShop(@Param("shopId") long shopId, @Param("limit") int limit);
+
+    @Query(value = "SELECT product_id FROM products_categories WHERE category_id = :categoryId "
+            + "ORDER BY product_id LIMIT :limit", nativeQuery = true)
+    List<Long> findIdsByCategory(@Param("categoryId") long categoryId, @Param("limit") int limit);
+
+    // the categories are part of the product sent to the clients (ETag)
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "products"))
+    @Query(value = "UPDATE products SET version = current_timestamp WHERE id IN "
+            + "(SELECT product_id FROM products_categories WHERE category_id = :categoryId)", nativeQuery = true)
+    int incrementVersionsOfCategory(@Param("categoryId") long categoryId);
+
+    @Modifying
+    @Query("UPDATE Product p SET p.version = CURRENT_TIMESTAMP WHERE p.id IN :ids")
+    int incrementVersions(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "products_categories"))
+    @Query(value = "DELETE FROM products_categories WHERE category_id = :categoryId", nativeQuery = true)
+    int deleteAllCategoryLinks(@Param("categoryId") long categoryId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "products_categories"))
+    @Query(value = "DELETE FROM products_categories WHERE category_id = :categoryId AND product_id IN :ids",
+            nativeQuery = true)
+    int deleteCategoryLinks(@Param("categoryId") long categoryId, @Param("ids") Collection<Long> ids);
+
+    // EXPORT: server-side cursor, the entities are read-only and do not go to the second-level cache
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.shop ORDER BY p.id")
+    Stream<Product> streamAll();
+
+    // BATCH
+    // [product id, shop id (or null)] of the existing products
+    @Query("SELECT p.id, s.id FROM Product p LEFT JOIN p.shop s WHERE p.id IN :ids")
+    List<Object[]> findShopIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT l.id FROM Product p JOIN p.localizedProduct l WHERE p.id IN :ids")
+    List<Long> findLocalizedProductIds(@Param("ids") Collection<Long> ids);
+
+    // the query spaces limit the second-level cache eviction to the collections of these tables
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "products_categories"))
+    @Query(value = "DELETE FROM products_categories WHERE product_id IN :ids", nativeQuery = true)
+    int deleteCategoryLinks(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "products_localized_product"))
+    @Query(value = "DELETE FROM products_localized_product WHERE product_id IN :ids", nativeQuery = true)
+    int deleteLocalizedProductLinks(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM LocalizedProduct l WHERE l.id IN :ids")
+    int deleteLocalizedProductsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM Product p WHERE p.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
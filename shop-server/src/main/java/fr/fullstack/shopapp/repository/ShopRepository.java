@@ -1,14 +1,37 @@
 package fr.fullstack.shopapp.repository;
 
 import fr.fullstack.shopapp.model.Shop;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ShopRepository extends JpaRepository<Shop, Long> {
+    // opening interval of the shop s containing :minute, see findOpenAt
+    String OPEN_AT = "SELECT h.id FROM Shop o JOIN o.openingHours h WHERE o.id = s.id AND ("
+            + "(h.startMinute <= :minute AND h.endMinute > :minute) OR "
+            + "(h.startMinute <= :nextWeekMinute AND h.endMinute > :nextWeekMinute))";
+
+    String OPEN_AT_FILTERS = "AND (:inVacations IS NULL OR s.inVacations = :inVacations) "
+            + "AND (:createdAfter IS NULL OR s.createdAt > :createdAfter) "
+            + "AND (:createdBefore IS NULL OR s.createdAt < :createdBefore)";
+
     Page<Shop> findByCreatedAtBetween(LocalDate dateStart, LocalDate dateEnd, Pageable pageable);
 
     Page<Shop> findByCreatedAtGreaterThan(LocalDate date, Pageable pageable);
@@ -34,17 +57,101 @@ public interface ShopRepository extends JpaRepository<Shop, Long> {
     // SORT
     Page<Shop> findByOrderByNameAsc(Pageable pageable);
 
-    @Query(
-            value = "SELECT *,"
-                    + "(SELECT COUNT(*) FROM products p WHERE p.shop_id = s.id) as nbProducts, "
-                    + "(SELECT COUNT(DISTINCT pc.category_id) FROM products_categories pc WHERE pc.product_id IN "
-                    + "(SELECT p.id FROM products p WHERE p.shop_id = s.id)) as nbCategories "
-                    + "FROM shops s "
-                    + "ORDER BY (SELECT COUNT(*) FROM products p WHERE p.shop_id = s.id) DESC",
-            countQuery = "SELECT * "
-                    + "FROM shops s "
-                    + "ORDER BY (SELECT COUNT(*) FROM products p WHERE p.shop_id = s.id) DESC",
-            nativeQuery = true
-    )
-    Page<Shop> findByOrderByNbProductsAsc(Pageable pageable);
+    Page<Shop> findByOrderByNbProductsDescIdAsc(Pageable pageable);
+
+    // OPENING HOURS: shops with an opening interval containing the minute of the week (or the same
+    // minute of the next week, for the intervals ending after sunday midnight), see WeekMinutes
+    @Query(value = "SELECT s FROM Shop s WHERE EXISTS (" + OPEN_AT + ") " + OPEN_AT_FILTERS,
+            countQuery = "SELECT COUNT(s) FROM Shop s WHERE EXISTS (" + OPEN_AT + ") " + OPEN_AT_FILTERS)
+    Page<Shop> findOpenAt(
+            @Param("minute") int minute,
+            @Param("nextWeekMinute") int nextWeekMinute,
+            @Param("inVacations") Boolean inVacations,
+            @Param("createdAfter") LocalDate createdAfter,
+            @Param("createdBefore") LocalDate createdBefore,
+            Pageable pageable
+    );
+
+    // KEYSET
+    Window<Shop> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    Window<Shop> findByInVacations(boolean inVacations, ScrollPosition position, Sort sort, Limit limit);
+
+    // COUNTERS: versioned, the counters are part of the shop sent to the clients (ETag).
+    // The versions are always set by the database clock, as the @Version of the entities
+    @Modifying
+    @Query("UPDATE Shop s SET s.nbProducts = s.nbProducts + :delta, s.version = CURRENT_TIMESTAMP "
+            + "WHERE s.id = :shopId")
+    int incrementNbProducts(@Param("shopId") long shopId, @Param("delta") long delta);
+
+    @Modifying
+    @Query("UPDATE Shop s SET s.nbCategories = "
+            + "(SELECT COUNT(DISTINCT c.id) FROM Product p JOIN p.categories c WHERE p.shop.id = s.id), "
+            + "s.version = CURRENT_TIMESTAMP WHERE s.id IN :shopIds")
+    int refreshNbCategories(@Param("shopIds") Collection<Long> shopIds);
+
+    // shops of the id range whose counters drifted from the products
+    @Query("SELECT s.id FROM Shop s WHERE s.id > :fromId AND s.id <= :toId "
+            + "AND (s.nbProducts <> (SELECT COUNT(p) FROM Product p WHERE p.shop.id = s.id) "
+            + "OR s.nbCategories <> "
+            + "(SELECT COUNT(DISTINCT c.id) FROM Product p JOIN p.categories c WHERE p.shop.id = s.id))")
+    List<Long> findDriftedCounterIds(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Modifying
+    @Query("UPDATE Shop s SET "
+            + "s.nbProducts = (SELECT COUNT(p) FROM Product p WHERE p.shop.id = s.id), "
+            + "s.nbCategories = "
+            + "(SELECT COUNT(DISTINCT c.id) FROM Product p JOIN p.categories c WHERE p.shop.id = s.id), "
+            + "s.version = CURRENT_TIMESTAMP "
+            + "WHERE s.id IN :shopIds")
+    int reconcileCounters(@Param("shopIds") Collection<Long> shopIds);
+
+    // VERSIONS (ETags): read from the database at each request, never cached, so every
+    // instance sees the writes of the others at once (index-only scans on idx_shop_version)
+    @Query("SELECT s.version FROM Shop s WHERE s.id = :id")
+    Optional<Instant> findVersionById(@Param("id") long id);
+
+    // change counter of the table (table-changes.sql)
+    @Query(value = "SELECT COALESCE(MAX(change), 0) FROM table_changes WHERE name = 'shops'", nativeQuery = true)
+    long findTableChange();
+
+    // new version for a change of the opening hours only, which are rows of their own
+    @Modifying
+    @Query("UPDATE Shop s SET s.version = CURRENT_TIMESTAMP WHERE s.id = :id")
+    int incrementVersion(@Param("id") long id);
+
+    // DELETES: the tombstoned shops are hidden from the JPQL queries, the purge uses native ones
+    @Modifying
+    @Query("UPDATE Shop s SET s.deletedAt = CURRENT_TIMESTAMP, s.version = CURRENT_TIMESTAMP WHERE s.id = :id")
+    int markDeleted(@Param("id") long id);
+
+    @Query(value = "SELECT id FROM shops WHERE deleted_at IS NOT NULL ORDER BY id", nativeQuery = true)
+    List<Long> findDeletedIds();
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "shops_opening_hours,opening_hours"))
+    @Query(value = "WITH links AS (DELETE FROM shops_opening_hours WHERE shop_id = :id "
+            + "RETURNING opening_hours_id) "
+            + "DELETE FROM opening_hours WHERE id IN (SELECT opening_hours_id FROM links)", nativeQuery = true)
+    int deleteOpeningHoursOf(@Param("id") long id);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "shops"))
+    @Query(value = "DELETE FROM shops WHERE id = :id AND deleted_at IS NOT NULL", nativeQuery = true)
+    int deleteTombstone(@Param("id") long id);
+
+    @Query("SELECT s.id FROM Shop s WHERE s.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // EXPORT: server-side cursor, the entities are read-only and do not go to the second-level cache
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("SELECT s FROM Shop s ORDER BY s.id")
+    Stream<Shop> streamAll();
+
+    @Query("SELECT MAX(s.id) FROM Shop s")
+    Long findMaxId();
 }
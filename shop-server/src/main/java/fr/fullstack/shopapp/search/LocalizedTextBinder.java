@@ -0,0 +1,89 @@
+package fr.fullstack.shopapp.search;
+
+import fr.fullstack.shopapp.model.Locale;
+import fr.fullstack.shopapp.model.LocalizedProduct;
+import org.hibernate.search.engine.backend.document.DocumentElement;
+import org.hibernate.search.engine.backend.document.IndexFieldReference;
+import org.hibernate.search.engine.backend.document.model.dsl.IndexSchemaElement;
+import org.hibernate.search.mapper.pojo.bridge.PropertyBridge;
+import org.hibernate.search.mapper.pojo.bridge.binding.PropertyBindingContext;
+import org.hibernate.search.mapper.pojo.bridge.mapping.programmatic.PropertyBinder;
+import org.hibernate.search.mapper.pojo.bridge.runtime.PropertyBridgeWriteContext;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes the names and descriptions of the localized products in one field per
+ * locale (name_fr, description_en...), each analyzed with the analyzer of its language.
+ */
+public class LocalizedTextBinder implements PropertyBinder {
+
+    public static String analyzerName(Locale locale) {
+        return "text_" + locale.name().toLowerCase();
+    }
+
+    public static String descriptionField(Locale locale) {
+        return "description_" + locale.name().toLowerCase();
+    }
+
+    public static String nameField(Locale locale) {
+        return "name_" + locale.name().toLowerCase();
+    }
+
+    @Override
+    public void bind(PropertyBindingContext context) {
+        // the localized products are only modified through their product
+        context.dependencies().useRootOnly();
+
+        IndexSchemaElement schemaElement = context.indexSchemaElement();
+        Map<Locale, IndexFieldReference<String>> nameFields = new EnumMap<>(Locale.class);
+        Map<Locale, IndexFieldReference<String>> descriptionFields = new EnumMap<>(Locale.class);
+        for (Locale locale : Locale.values()) {
+            nameFields.put(locale, schemaElement.field(
+                    nameField(locale), f -> f.asString().analyzer(analyzerName(locale)))
+                    .multiValued()
+                    .toReference());
+            descriptionFields.put(locale, schemaElement.field(
+                    descriptionField(locale), f -> f.asString().analyzer(analyzerName(locale)))
+                    .multiValued()
+                    .toReference());
+        }
+
+        context.bridge(List.class, new Bridge(nameFields, descriptionFields));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static class Bridge implements PropertyBridge<List> {
+        private final Map<Locale, IndexFieldReference<String>> descriptionFields;
+
+        private final Map<Locale, IndexFieldReference<String>> nameFields;
+
+        private Bridge(
+                Map<Locale, IndexFieldReference<String>> nameFields,
+                Map<Locale, IndexFieldReference<String>> descriptionFields
+        ) {
+            this.nameFields = nameFields;
+            this.descriptionFields = descriptionFields;
+        }
+
+        @Override
+        public void write(DocumentElement target, List bridgedElement, PropertyBridgeWriteContext context) {
+            for (Object element : bridgedElement) {
+                LocalizedProduct localizedProduct = (LocalizedProduct) element;
+                Locale locale;
+                try {
+                    locale = Locale.valueOf(localizedProduct.getLocale());
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    continue;
+                }
+
+                target.addValue(nameFields.get(locale), localizedProduct.getName());
+                if (localizedProduct.getDescription() != null) {
+                    target.addValue(descriptionFields.get(locale), localizedProduct.getDescription());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package fr.fullstack.shopapp.search;
+
+import org.hibernate.search.engine.search.predicate.dsl.BooleanPredicateClausesStep;
+import org.hibernate.search.engine.search.predicate.dsl.PredicateFinalStep;
+import org.hibernate.search.engine.search.predicate.dsl.SearchPredicateFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Builds the predicate of a search from optional criteria, for any indexed type.
+ * Scored criteria (full-text) go in "must" clauses, the others in "filter" clauses
+ * which do not change the score and can be cached by Elasticsearch.
+ * An empty builder matches all the documents.
+ */
+public class SearchFilterBuilder {
+    private final SearchPredicateFactory f;
+
+    private final List<PredicateFinalStep> filters = new ArrayList<>();
+
+    private final List<PredicateFinalStep> musts = new ArrayList<>();
+
+    private SearchFilterBuilder(SearchPredicateFactory f) {
+        this.f = f;
+    }
+
+    public static SearchFilterBuilder with(SearchPredicateFactory f) {
+        return new SearchFilterBuilder(f);
+    }
+
+    public PredicateFinalStep build() {
+        if (musts.isEmpty() && filters.isEmpty()) {
+            return f.matchAll();
+        }
+        BooleanPredicateClausesStep<?> predicate = f.bool();
+        musts.forEach(predicate::must);
+        filters.forEach(predicate::filter);
+        return predicate;
+    }
+
+    public SearchFilterBuilder filter(PredicateFinalStep clause) {
+        filters.add(clause);
+        return this;
+    }
+
+    public SearchFilterBuilder filterIf(boolean condition, PredicateFinalStep clause) {
+        return condition ? filter(clause) : this;
+    }
+
+    public SearchFilterBuilder match(String field, Optional<?> value) {
+        value.ifPresent(v -> filters.add(f.match().field(field).matching(v)));
+        return this;
+    }
+
+    public SearchFilterBuilder must(PredicateFinalStep clause) {
+        musts.add(clause);
+        return this;
+    }
+
+    public SearchFilterBuilder range(String field, Optional<?> min, Optional<?> max) {
+        if (min.isPresent() && max.isPresent()) {
+            filters.add(f.range().field(field).between(min.get(), max.get()));
+        } else if (min.isPresent()) {
+            filters.add(f.range().field(field).atLeast(min.get()));
+        } else if (max.isPresent()) {
+            filters.add(f.range().field(field).atMost(max.get()));
+        }
+        return this;
+    }
+
+    public SearchFilterBuilder text(String text, String... fields) {
+        if (text != null && !text.isBlank()) {
+            musts.add(f.match().fields(fields).matching(text));
+        }
+        return this;
+    }
+}
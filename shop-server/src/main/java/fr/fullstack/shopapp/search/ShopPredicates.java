@@ -0,0 +1,42 @@
+package fr.fullstack.shopapp.search;
+
+import fr.fullstack.shopapp.util.WeekMinutes;
+import org.hibernate.search.engine.search.predicate.dsl.PredicateFinalStep;
+import org.hibernate.search.engine.search.predicate.dsl.SearchPredicateFactory;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Predicate of the shops search, shared by the search endpoints (and the benchmarks).
+ */
+public class ShopPredicates {
+    // shops with an opening interval containing the minute of the week, see WeekMinutes
+    public static PredicateFinalStep openAt(SearchPredicateFactory f, int minute) {
+        // the intervals ending after sunday midnight also contain the minute of the next week
+        return f.or(
+                openingIntervalContains(f, minute),
+                openingIntervalContains(f, minute + WeekMinutes.MINUTES_PER_WEEK));
+    }
+
+    public static PredicateFinalStep search(
+            SearchPredicateFactory f,
+            String searchText,
+            Optional<Boolean> inVacations,
+            Optional<LocalDate> createdAfter,
+            Optional<LocalDate> createdBefore,
+            Optional<Integer> openAt) {
+        SearchFilterBuilder filters = SearchFilterBuilder.with(f)
+                .text(searchText, "name")
+                .match("inVacations", inVacations)
+                .range("createdAt", createdAfter, createdBefore);
+        openAt.ifPresent(minute -> filters.filter(openAt(f, minute)));
+        return filters.build();
+    }
+
+    private static PredicateFinalStep openingIntervalContains(SearchPredicateFactory f, int minute) {
+        return f.nested("openingHours")
+                .add(f.range().field("openingHours.startMinute").atMost(minute))
+                .add(f.range().field("openingHours.endMinute").greaterThan(minute));
+    }
+}
@@ -0,0 +1,296 @@
+package fr.fullstack.shopapp.service;
+
+import fr.fullstack.shopapp.config.ReplicaRoutingDataSource;
+import fr.fullstack.shopapp.dto.AnalyticsStatus;
+import fr.fullstack.shopapp.dto.CategoryStats;
+import fr.fullstack.shopapp.dto.ShopCategoryStats;
+import fr.fullstack.shopapp.dto.ShopStats;
+import fr.fullstack.shopapp.dto.ShopsPerMonth;
+import fr.fullstack.shopapp.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Catalog statistics served from Postgres materialized views (analytics-views.sql),
+ * so the dashboards never scan the products. The views are refreshed concurrently
+ * (the reads go on during the refresh) once the catalog has changed: a burst of
+ * writes is waited for until the tables are stable between two polls, unless the
+ * views are older than the max staleness.
+ *
+ * The version of the tables (their change counters, table-changes.sql) read by the last
+ * refresh is stored in the database (analytics_refresh_state) and checked under the
+ * advisory lock: a change is refreshed by one instance, the others find it done.
+ */
+@Service
+public class AnalyticsService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnalyticsService.class);
+
+    private static final List<String> VIEWS = List.of(
+            "analytics_shop_stats",
+            "analytics_category_stats",
+            "analytics_shop_category_stats",
+            "analytics_shops_per_month"
+    );
+
+    // sort of the lists, the id always closes it
+    private static final Map<String, String> SHOP_SORTS = Map.of(
+            "nbProducts", "nb_products DESC",
+            "nbCategories", "nb_categories DESC",
+            "minPrice", "min_price NULLS LAST",
+            "avgPrice", "avg_price DESC NULLS LAST",
+            "maxPrice", "max_price DESC NULLS LAST",
+            "name", "name"
+    );
+
+    private static final Map<String, String> CATEGORY_SORTS = Map.of(
+            "nbProducts", "nb_products DESC",
+            "nbShops", "nb_shops DESC",
+            "minPrice", "min_price NULLS LAST",
+            "avgPrice", "avg_price DESC NULLS LAST",
+            "maxPrice", "max_price DESC NULLS LAST",
+            "name", "name"
+    );
+
+    private static final RowMapper<ShopStats> SHOP_STATS = (rs, row) -> new ShopStats(
+            rs.getLong("shop_id"),
+            rs.getString("name"),
+            rs.getLong("nb_products"),
+            rs.getLong("nb_categories"),
+            rs.getObject("min_price", Double.class),
+            rs.getObject("avg_price", Double.class),
+            rs.getObject("max_price", Double.class)
+    );
+
+    private static final RowMapper<CategoryStats> CATEGORY_STATS = (rs, row) -> new CategoryStats(
+            rs.getLong("category_id"),
+            rs.getString("name"),
+            rs.getLong("nb_products"),
+            rs.getLong("nb_shops"),
+            rs.getObject("min_price", Double.class),
+            rs.getObject("avg_price", Double.class),
+            rs.getObject("max_price", Double.class)
+    );
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${shop.analytics.max-staleness:3600000}")
+    private long maxStaleness;
+
+    // version of the tables read by the last poll of this instance
+    private volatile String polledVersion;
+
+    // creates the missing views, populated
+    public void createViews() {
+        new ResourceDatabasePopulator(new ClassPathResource("analytics-views.sql")).execute(dataSource);
+    }
+
+    @Transactional(readOnly = true)
+    public Page<ShopStats> getShopStats(Optional<String> sortBy, Pageable pageable) {
+        String order = orderBy(SHOP_SORTS, sortBy, "shop_id");
+        List<ShopStats> stats = jdbcTemplate.query(
+                "SELECT * FROM analytics_shop_stats ORDER BY " + order + " LIMIT ? OFFSET ?",
+                SHOP_STATS, pageable.getPageSize(), pageable.getOffset());
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM analytics_shop_stats", Long.class);
+        return new PageImpl<ShopStats>(stats, pageable, total == null ? 0 : total);
+    }
+
+    @Transactional(readOnly = true)
+    public ShopStats getShopStatsById(long shopId) throws Exception {
+        List<ShopStats> stats = jdbcTemplate.query(
+                "SELECT * FROM analytics_shop_stats WHERE shop_id = ?", SHOP_STATS, shopId);
+        if (stats.isEmpty()) {
+            throw new Exception("Statistiques de la boutique avec id " + shopId + " non trouvées");
+        }
+        return stats.get(0);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ShopCategoryStats> getShopCategoryStats(long shopId) {
+        return jdbcTemplate.query(
+                "SELECT category_id, category_name, nb_products FROM analytics_shop_category_stats "
+                        + "WHERE shop_id = ? ORDER BY nb_products DESC, category_id",
+                (rs, row) -> new ShopCategoryStats(
+                        rs.getLong("category_id"), rs.getString("category_name"), rs.getLong("nb_products")),
+                shopId);
+    }
+
+    @Transactional(readOnly = true)
+    public Page<CategoryStats> getCategoryStats(Optional<String> sortBy, Pageable pageable) {
+        String order = orderBy(CATEGORY_SORTS, sortBy, "category_id");
+        List<CategoryStats> stats = jdbcTemplate.query(
+                "SELECT * FROM analytics_category_stats ORDER BY " + order + " LIMIT ? OFFSET ?",
+                CATEGORY_STATS, pageable.getPageSize(), pageable.getOffset());
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM analytics_category_stats", Long.class);
+        return new PageImpl<CategoryStats>(stats, pageable, total == null ? 0 : total);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ShopsPerMonth> getShopsPerMonth(Optional<YearMonth> from, Optional<YearMonth> to) {
+        return jdbcTemplate.query(
+                "SELECT month, nb_shops FROM analytics_shops_per_month "
+                        + "WHERE (CAST(? AS date) IS NULL OR month >= ?) AND (CAST(? AS date) IS NULL OR month <= ?) "
+                        + "ORDER BY month",
+                (rs, row) -> new ShopsPerMonth(
+                        YearMonth.from(rs.getDate("month").toLocalDate()), rs.getLong("nb_shops")),
+                firstDay(from), firstDay(from), firstDay(to), firstDay(to));
+    }
+
+    public AnalyticsStatus getStatus() {
+        RefreshState state = refreshState();
+        if (state == null) {
+            return new AnalyticsStatus(null, null, true);
+        }
+        boolean stale = !state.tablesVersion.equals(tablesVersion());
+        return new AnalyticsStatus(state.refreshedAt, state.refreshMillis, stale);
+    }
+
+    // returns false when another instance is refreshing the views
+    public boolean refresh() {
+        return refresh(tablesVersion(), true);
+    }
+
+    @Scheduled(
+            fixedDelayString = "${shop.analytics.poll-interval:30000}",
+            initialDelayString = "${shop.analytics.poll-interval:30000}"
+    )
+    public void refreshIfChanged() {
+        String version = tablesVersion();
+        boolean settled = version.equals(polledVersion);
+        polledVersion = version;
+        RefreshState state = refreshState();
+        if (state != null && version.equals(state.tablesVersion)) {
+            return;
+        }
+
+        boolean tooOld = state == null
+                || Duration.between(state.refreshedAt, Instant.now()).toMillis() > maxStaleness;
+        if (settled || tooOld) {
+            refresh(version, false);
+        }
+    }
+
+    // no synchronized: the advisory lock also excludes the other threads of this instance,
+    // without pinning the carrier of a virtual thread for the duration of the refresh
+    private boolean refresh(String version, boolean force) {
+        long start = System.nanoTime();
+        Boolean refreshed = ReplicaRoutingDataSource.onPrimary(() -> new TransactionTemplate(transactionManager)
+                .execute(status -> {
+                    // one instance at a time refreshes the views
+                    Boolean locked = jdbcTemplate.queryForObject(
+                            "SELECT pg_try_advisory_xact_lock(hashtext('analytics-views'))", Boolean.class);
+                    if (!Boolean.TRUE.equals(locked)) {
+                        return false;
+                    }
+                    // already refreshed for this version by another instance: nothing to do (null)
+                    RefreshState state = refreshState();
+                    if (!force && state != null && version.equals(state.tablesVersion)) {
+                        return null;
+                    }
+                    for (String view : VIEWS) {
+                        jdbcTemplate.execute("REFRESH MATERIALIZED VIEW CONCURRENTLY " + view);
+                    }
+                    jdbcTemplate.update(
+                            "INSERT INTO analytics_refresh_state (id, tables_version, refreshed_at, refresh_millis) "
+                                    + "VALUES (1, ?, now(), ?) ON CONFLICT (id) DO UPDATE SET "
+                                    + "tables_version = excluded.tables_version, refreshed_at = excluded.refreshed_at, "
+                                    + "refresh_millis = excluded.refresh_millis",
+                            version, Duration.ofNanos(System.nanoTime() - start).toMillis());
+                    return true;
+                }));
+        if (refreshed == null) {
+            return true;
+        }
+        if (!refreshed) {
+            return false;
+        }
+
+        long duration = System.nanoTime() - start;
+        Timer.builder("shopapp.analytics.refresh")
+                .description("Refresh of the analytics materialized views")
+                .register(meterRegistry)
+                .record(Duration.ofNanos(duration));
+        LOGGER.info("Analytics views refreshed in {} ms", Duration.ofNanos(duration).toMillis());
+        return true;
+    }
+
+    private RefreshState refreshState() {
+        List<RefreshState> states = ReplicaRoutingDataSource.onPrimary(() -> jdbcTemplate.query(
+                "SELECT tables_version, refreshed_at, refresh_millis FROM analytics_refresh_state WHERE id = 1",
+                (rs, row) -> new RefreshState(
+                        rs.getString("tables_version"),
+                        rs.getTimestamp("refreshed_at").toInstant(),
+                        rs.getLong("refresh_millis"))));
+        return states.isEmpty() ? null : states.get(0);
+    }
+
+    // change counters of the products, the shops and the categories, incremented in the order
+    // of the commits (table-changes.sql)
+    private String tablesVersion() {
+        return ReplicaRoutingDataSource.onPrimary(() -> String.valueOf(productRepository.findTablesChange()));
+    }
+
+    private static Date firstDay(Optional<YearMonth> month) {
+        return month.map(m -> Date.valueOf(m.atDay(1))).orElse(null);
+    }
+
+    private static String orderBy(Map<String, String> sorts, Optional<String> sortBy, String id) {
+        String sort = sorts.get(sortBy.orElse("nbProducts"));
+        if (sort == null) {
+            throw new IllegalArgumentException("Tri inconnu : " + sortBy.get() + ", tris possibles : " + sorts.keySet());
+        }
+        return sort + ", " + id;
+    }
+
+    // last refresh of the views, by any instance
+    private static class RefreshState {
+        private final Instant refreshedAt;
+
+        private final long refreshMillis;
+
+        private final String tablesVersion;
+
+        RefreshState(String tablesVersion, Instant refreshedAt, long refreshMillis) {
+            this.refreshedAt = refreshedAt;
+            this.refreshMillis = refreshMillis;
+            this.tablesVersion = tablesVersion;
+        }
+    }
+}
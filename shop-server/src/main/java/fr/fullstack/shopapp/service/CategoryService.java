@@ -1,26 +1,56 @@
 package fr.fullstack.shopapp.service;
 
+import fr.fullstack.shopapp.config.ReplicaRoutingDataSource;
+import fr.fullstack.shopapp.dto.KeysetSlice;
 import fr.fullstack.shopapp.model.Category;
-import fr.fullstack.shopapp.model.Product;
 import fr.fullstack.shopapp.repository.CategoryRepository;
+import fr.fullstack.shopapp.repository.ProductRepository;
+import fr.fullstack.shopapp.util.ETags;
+import fr.fullstack.shopapp.util.KeysetCursor;
+import io.micrometer.core.annotation.Timed;
+import org.hibernate.Cache;
+import org.hibernate.jpa.SpecHints;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
+@Timed("shopapp.service")
 public class CategoryService {
+    @PersistenceContext
+    private EntityManager em;
+
     @Autowired
     private CategoryRepository categoryRepository;
 
-    @PersistenceContext
-    private EntityManager em;
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ShopCounterService shopCounterService;
+
+    @Autowired
+    private IndexingOutboxService indexingOutboxService;
+
+    // deleted categories are only marked, their links to the products are removed later by DeletionPurgeService
+    @Value("${shop.deletes.tombstones:false}")
+    private boolean tombstones;
+
+    // change counter of the categories (table-changes.sql) when the caches of this instance were
+    // last emptied: they may hold the categories before a write made through another instance
+    private final AtomicLong cachedChange = new AtomicLong(-1);
 
     public Category createCategory(Category category) throws Exception {
         try {
@@ -33,15 +63,25 @@ public class CategoryService {
     @Transactional
     public void deleteCategoryById(long id) throws Exception {
         try {
-            Category category = getCategory(id);
-            // delete nested relations with products
-            deleteNestedRelations(category);
-            categoryRepository.deleteById(id);
+            getCategory(id);
+            List<Long> shopIds = productRepository.findShopIdsByCategory(id);
+            indexingOutboxService.recordProductsOfCategory(id);
+            if (tombstones) {
+                // the tombstone already hides the category from the products and the counters
+                categoryRepository.markDeleted(id);
+            } else {
+                // relations with the products, in one statement
+                productRepository.incrementVersionsOfCategory(id);
+                productRepository.deleteAllCategoryLinks(id);
+                categoryRepository.deleteById(id);
+            }
+            shopCounterService.onCategoryDetached(shopIds);
         } catch (Exception e) {
             throw new Exception(e.getMessage());
         }
     }
 
+    @Transactional(readOnly = true)
     public Category getCategoryById(long id) throws Exception {
         try {
             return getCategory(id);
@@ -50,34 +90,80 @@ public class CategoryService {
         }
     }
 
-    public Page<Category> getCategoryList(Pageable pageable) {
-        return categoryRepository.findByOrderByIdAsc(pageable);
+    // the category read again from the primary, without the second-level cache which it refreshes:
+    // the cache of this instance, or the replica, may still give the category before a write made
+    // through another instance (see HttpCachePolicies)
+    @Transactional(readOnly = true)
+    public Category reloadCategoryById(long id) throws Exception {
+        // CacheMode.REFRESH, as the properties of the session: find reads them, not its cache mode
+        em.setProperty(SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS);
+        em.setProperty(SpecHints.HINT_SPEC_CACHE_STORE_MODE, CacheStoreMode.REFRESH);
+        // the first statement takes the connection of the transaction
+        ReplicaRoutingDataSource.onPrimary(() -> categoryRepository.findById(id));
+        return getCategoryById(id);
     }
 
+    // the versions are read from the primary, a lagging replica would answer 304 for a changed category
+    @Transactional(readOnly = true)
+    public Optional<String> getCategoryETag(long id) {
+        return ReplicaRoutingDataSource.onPrimary(() ->
+                ETags.of("category", id, categoryRepository.findVersionById(id)));
+    }
+
+    /**
+     * Page of the categories, never older than the change counter of its ETag (getCategoryListChange).
+     * The pages are kept in the query cache and the categories in the second-level cache of this
+     * instance, which only see its own writes: both are emptied once the counter has moved, and
+     * the misses read the primary, a page read from a lagging replica would stay cached.
+     */
+    @Transactional(readOnly = true)
+    public Page<Category> getCategoryList(Pageable pageable, long change) {
+        if (cachedChange.getAndSet(change) != change) {
+            evictCategories();
+        }
+        Page<Category> page = ReplicaRoutingDataSource.onPrimary(() -> categoryRepository.findByOrderByIdAsc(pageable));
+        // the counter moved while the page was read: it may have cached the categories before the change
+        if (cachedChange.get() != change) {
+            evictCategories();
+        }
+        return page;
+    }
+
+    // read from the primary, a lagging replica would answer 304 for a changed list
+    @Transactional(readOnly = true)
+    public long getCategoryListChange() {
+        return ReplicaRoutingDataSource.onPrimary(() -> categoryRepository.findTableChange());
+    }
+
+    @Transactional(readOnly = true)
+    public KeysetSlice<Category> getCategoryWindow(Optional<String> after, int size) {
+        Sort sort = Sort.by("id");
+        return KeysetSlice.of(categoryRepository.findAllBy(
+                KeysetCursor.position(after, sort), sort, KeysetCursor.limit(size)));
+    }
+
+    @Transactional
     public Category updateCategory(Category category) throws Exception {
         try {
-            getCategory(category.getId());
-            return this.createCategory(category);
+            // the version is not sent by the clients
+            category.setVersion(getCategory(category.getId()).getVersion());
+            Category updatedCategory = this.createCategory(category);
+            indexingOutboxService.recordProductsOfCategory(updatedCategory.getId());
+            return updatedCategory;
         } catch (Exception e) {
             throw new Exception(e.getMessage());
         }
     }
 
-    private void deleteNestedRelations(Category category) {
-        List<Product> products = category.getProducts();
-        for (int i = 0; i < products.size(); i++) {
-            Product product = products.get(i);
-            List<Category> categories = product.getCategories();
-            categories.remove(category);
-            product.setCategories(categories);
-            em.merge(product);
-            em.flush();
-        }
+    private void evictCategories() {
+        Cache cache = em.getEntityManagerFactory().getCache().unwrap(Cache.class);
+        cache.evictEntityData(Category.class);
+        cache.evictQueryRegion("category-list");
     }
 
     private Category getCategory(Long id) throws Exception {
         Optional<Category> category = categoryRepository.findById(id);
-        if (!category.isPresent()) {
+        if (!category.isPresent() || category.get().getDeletedAt() != null) {
             throw new Exception("Catégorie avec id " + id + " non trouvé");
         }
         return category.get();
@@ -0,0 +1,111 @@
+package fr.fullstack.shopapp.service;
+
+import fr.fullstack.shopapp.model.IndexingEventType;
+import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.repository.CategoryRepository;
+import fr.fullstack.shopapp.repository.ProductRepository;
+import fr.fullstack.shopapp.repository.ShopRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Removes the shops and categories deleted as tombstones (shop.deletes.tombstones=true).
+ * Their products are detached by chunks of product ids, one short transaction per
+ * chunk, then the tombstone itself is deleted. A purge interrupted by a failure goes
+ * on at the next run.
+ */
+@Service
+public class DeletionPurgeService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeletionPurgeService.class);
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private IndexingOutboxService indexingOutboxService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${shop.deletes.purge-chunk-size:1000}")
+    private int chunkSize;
+
+    @Scheduled(fixedDelayString = "${shop.deletes.purge-interval:60000}")
+    public void purge() {
+        for (Long shopId : shopRepository.findDeletedIds()) {
+            try {
+                purgeShop(shopId);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Purge of the deleted shop {} failed: {}", shopId, e.getMessage());
+            }
+        }
+        for (Long categoryId : categoryRepository.findDeletedIds()) {
+            try {
+                purgeCategory(categoryId);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Purge of the deleted category {} failed: {}", categoryId, e.getMessage());
+            }
+        }
+    }
+
+    private void purgeCategory(long categoryId) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        long detached = 0;
+        int count;
+        do {
+            Integer chunk = transaction.execute(status -> {
+                List<Long> ids = productRepository.findIdsByCategory(categoryId, chunkSize);
+                if (!ids.isEmpty()) {
+                    // the products have been reindexed and the shop counters refreshed on the deletion
+                    productRepository.incrementVersions(ids);
+                    productRepository.deleteCategoryLinks(categoryId, ids);
+                }
+                return ids.size();
+            });
+            count = chunk == null ? 0 : chunk;
+            detached += count;
+        } while (count == chunkSize);
+
+        transaction.executeWithoutResult(status -> categoryRepository.deleteTombstone(categoryId));
+        LOGGER.info("Deleted category {} purged, {} products detached", categoryId, detached);
+    }
+
+    private void purgeShop(long shopId) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        long detached = 0;
+        int count;
+        do {
+            Integer chunk = transaction.execute(status -> {
+                List<Long> ids = productRepository.findIdsByShop(shopId, chunkSize);
+                if (!ids.isEmpty()) {
+                    productRepository.detachFromShop(ids);
+                    // the products index embeds their shop
+                    indexingOutboxService.recordAll(Product.class, ids, IndexingEventType.ADD_OR_UPDATE);
+                }
+                return ids.size();
+            });
+            count = chunk == null ? 0 : chunk;
+            detached += count;
+        } while (count == chunkSize);
+
+        transaction.executeWithoutResult(status -> {
+            shopRepository.deleteOpeningHoursOf(shopId);
+            shopRepository.deleteTombstone(shopId);
+        });
+        LOGGER.info("Deleted shop {} purged, {} products detached", shopId, detached);
+    }
+}
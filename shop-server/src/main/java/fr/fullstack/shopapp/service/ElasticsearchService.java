@@ -1,92 +1,263 @@
 package fr.fullstack.shopapp.service;
 
+import fr.fullstack.shopapp.dto.SearchResultPage;
+import fr.fullstack.shopapp.dto.ShopSearchHit;
+import fr.fullstack.shopapp.dto.ShopSuggestion;
+import fr.fullstack.shopapp.model.Locale;
+import fr.fullstack.shopapp.model.Product;
 import fr.fullstack.shopapp.model.Shop;
+import fr.fullstack.shopapp.search.LocalizedTextBinder;
+import fr.fullstack.shopapp.search.SearchFilterBuilder;
+import fr.fullstack.shopapp.search.ShopPredicates;
+import fr.fullstack.shopapp.util.JsonGraphs;
+import fr.fullstack.shopapp.util.LruCache;
+import fr.fullstack.shopapp.util.Prices;
+import fr.fullstack.shopapp.util.WeekMinutes;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
-import org.hibernate.search.engine.search.predicate.dsl.MatchAllPredicateOptionsStep;
+import org.hibernate.search.engine.search.aggregation.AggregationKey;
+import org.hibernate.search.engine.search.query.SearchResult;
 import org.hibernate.search.mapper.orm.Search;
 import org.hibernate.search.mapper.orm.session.SearchSession;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
 public class ElasticsearchService {
+    private static final AggregationKey<Map<Long, Long>> CATEGORIES_FACET = AggregationKey.of("categories");
+    private static final AggregationKey<Map<Long, Long>> SHOPS_FACET = AggregationKey.of("shops");
+    private static final int FACET_SIZE = 20;
 
     @Autowired
     private EntityManager entityManager;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // track_total_hits: the hits are counted exactly up to this number
+    @Value("${shop.search.track-total-hits:10000}")
+    private int trackTotalHits;
+
+    // time zone of the opening hours of the shops
+    @Value("${shop.opening-hours.zone:Europe/Paris}")
+    private ZoneId openingHoursZone;
+
+    @Value("${shop.search.suggest.max-size:20}")
+    private int suggestMaxSize;
+
+    @Value("${shop.search.suggest.cache-size:1000}")
+    private int suggestCacheSize;
+
+    @Value("${shop.search.suggest.cache-ttl:30000}")
+    private long suggestCacheTtl;
+
+    // the same prefixes are typed by many users: the suggestions are cached by prefix and size
+    private LruCache<String, List<ShopSuggestion>> suggestCache;
+
+    @PostConstruct
+    public void init() {
+        suggestCache = new LruCache<>(suggestCacheSize, suggestCacheTtl);
+    }
+
     @Transactional(readOnly = true)
-    public Page<Shop> searchShops(
+    public SearchResultPage<Product> searchProducts(
             String searchText,
-            Optional<Boolean> inVacations,
-            Optional<LocalDate> createdAfter,
-            Optional<LocalDate> createdBefore,
+            Optional<Locale> locale,
+            Optional<BigDecimal> minPrice,
+            Optional<BigDecimal> maxPrice,
+            Optional<Long> categoryId,
+            Optional<Long> shopId,
+            Optional<Boolean> openShopsOnly,
+            boolean withFacets,
             Pageable pageable) {
 
         SearchSession searchSession = Search.session(entityManager);
+        Locale[] locales = locale.isPresent() ? new Locale[] {locale.get()} : Locale.values();
 
-        var query = searchSession.search(Shop.class)
+        var query = searchSession.search(Product.class)
                 .where(f -> {
-                    var predicate = f.matchAll();
+                    SearchFilterBuilder filters = SearchFilterBuilder.with(f);
 
-                    if (searchText != null && !searchText.isEmpty()) {
-                        predicate = (MatchAllPredicateOptionsStep<?>) f.match()
-                                .field("name")
-                                .matching(searchText);
+                    if (searchText != null && !searchText.isBlank()) {
+                        String[] nameFields = new String[locales.length];
+                        String[] descriptionFields = new String[locales.length];
+                        for (int i = 0; i < locales.length; i++) {
+                            nameFields[i] = LocalizedTextBinder.nameField(locales[i]);
+                            descriptionFields[i] = LocalizedTextBinder.descriptionField(locales[i]);
+                        }
+                        // a match on the name ranks higher than a match on the description
+                        filters.must(f.bool()
+                                .should(f.match().fields(nameFields).matching(searchText).boost(2.0f))
+                                .should(f.match().fields(descriptionFields).matching(searchText)));
                     }
 
-                    if (inVacations.isPresent()) {
-                        predicate = (MatchAllPredicateOptionsStep<?>) f.bool()
-                                .must(predicate)
-                                .must(f.match()
-                                        .field("inVacations")
-                                        .matching(inVacations.get()));
-                    }
+                    return filters
+                            .range("priceMinor", minPrice.map(Prices::toMinor), maxPrice.map(Prices::toMinor))
+                            .match("categories.id", categoryId)
+                            .match("shop.id", shopId)
+                            .filterIf(openShopsOnly.orElse(false),
+                                    f.match().field("shop.inVacations").matching(false))
+                            .build();
+                })
+                .totalHitCountThreshold(trackTotalHits);
 
-                    if (createdAfter.isPresent()) {
-                        predicate = (MatchAllPredicateOptionsStep<?>) f.bool()
-                                .must(predicate)
-                                .must(f.range()
-                                        .field("createdAt")
-                                        .atLeast(createdAfter.get()));
-                    }
+        if (withFacets) {
+            query.aggregation(CATEGORIES_FACET, f -> f.terms().field("categories.id", Long.class)
+                    .maxTermCount(FACET_SIZE));
+            query.aggregation(SHOPS_FACET, f -> f.terms().field("shop.id", Long.class)
+                    .maxTermCount(FACET_SIZE));
+        }
 
-                    if (createdBefore.isPresent()) {
-                        predicate = (MatchAllPredicateOptionsStep<?>) f.bool()
-                                .must(predicate)
-                                .must(f.range()
-                                        .field("createdAt")
-                                        .atMost(createdBefore.get()));
-                    }
+        SearchResult<Product> result = timed("products",
+                () -> query.fetch((int) pageable.getOffset(), pageable.getPageSize()));
+
+        Map<String, Map<?, Long>> facets = withFacets
+                ? Map.of(
+                        "categories", result.aggregation(CATEGORIES_FACET),
+                        "shops", result.aggregation(SHOPS_FACET))
+                : Map.of();
+        JsonGraphs.products(result.hits());
+        return page(result, pageable, facets);
+    }
+
+    @Transactional(readOnly = true)
+    public SearchResultPage<Shop> searchShops(
+            String searchText,
+            Optional<Boolean> inVacations,
+            Optional<LocalDate> createdAfter,
+            Optional<LocalDate> createdBefore,
+            Optional<String> openAt,
+            Pageable pageable) {
+
+        SearchSession searchSession = Search.session(entityManager);
+        Optional<Integer> openAtMinute = openAt.map(value -> WeekMinutes.parse(value, openingHoursZone));
 
-                    return predicate;
-                });
+        // hits and total count in one request
+        SearchResult<Shop> result = timed("shops", () -> searchSession.search(Shop.class)
+                .where(f -> ShopPredicates.search(
+                        f, searchText, inVacations, createdAfter, createdBefore, openAtMinute))
+                .totalHitCountThreshold(trackTotalHits)
+                .fetch((int) pageable.getOffset(), pageable.getPageSize()));
 
-        // Pagination
-        List<Shop> hits = query
-                .fetchHits((int) pageable.getOffset(), pageable.getPageSize());
+        JsonGraphs.shops(result.hits());
+        return page(result, pageable, Map.of());
+    }
 
-        // Total result count for pagination
-        long totalHitCount = query.fetchTotalHitCount();
+    /**
+     * Same search as searchShops, but the hits are built from the fields stored in
+     * Elasticsearch: no entity is loaded from the database.
+     */
+    @Transactional(readOnly = true)
+    public SearchResultPage<ShopSearchHit> searchShopHits(
+            String searchText,
+            Optional<Boolean> inVacations,
+            Optional<LocalDate> createdAfter,
+            Optional<LocalDate> createdBefore,
+            Optional<String> openAt,
+            Pageable pageable) {
 
-        return new PageImpl<>(hits, pageable, totalHitCount);
+        SearchSession searchSession = Search.session(entityManager);
+        Optional<Integer> openAtMinute = openAt.map(value -> WeekMinutes.parse(value, openingHoursZone));
+
+        SearchResult<ShopSearchHit> result = timed("shop-hits", () -> searchSession.search(Shop.class)
+                .select(f -> f.composite()
+                        .from(
+                                f.id(Long.class),
+                                f.field("name", String.class),
+                                f.field("createdAt", LocalDate.class),
+                                f.field("inVacations", Boolean.class),
+                                f.field("nbProducts", Long.class),
+                                f.field("openingHoursSummary", String.class)
+                        )
+                        .asList(values -> new ShopSearchHit(
+                                (Long) values.get(0),
+                                (String) values.get(1),
+                                (LocalDate) values.get(2),
+                                (Boolean) values.get(3),
+                                (Long) values.get(4),
+                                (String) values.get(5)
+                        )))
+                .where(f -> ShopPredicates.search(
+                        f, searchText, inVacations, createdAfter, createdBefore, openAtMinute))
+                .totalHitCountThreshold(trackTotalHits)
+                .fetch((int) pageable.getOffset(), pageable.getPageSize()));
+
+        return page(result, pageable, Map.of());
+    }
+
+    /**
+     * Shop names starting with the typed words, best matches first.
+     * Only the id and the name are read from Elasticsearch.
+     */
+    public List<ShopSuggestion> suggestShops(String text, int size) {
+        String prefix = text == null ? "" : text.trim().toLowerCase();
+        if (prefix.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int limit = Math.max(1, Math.min(size, suggestMaxSize));
+        return suggestCache.get(limit + "|" + prefix, key -> fetchSuggestions(prefix, limit));
     }
 
-    @Transactional
-    public void reindexAll() throws InterruptedException {
+    private List<ShopSuggestion> fetchSuggestions(String prefix, int limit) {
         SearchSession searchSession = Search.session(entityManager);
-        searchSession.massIndexer(Shop.class)  // Spécifier explicitement la classe
-                .dropAndCreateSchemaOnStart(true)  // Recréer le schéma
-                .typesToIndexInParallel(1)  // Limiter le parallélisme
-                .batchSizeToLoadObjects(10)  // Réduire la taille des lots
-                .threadsToLoadObjects(1)     // Limiter les threads
-                .startAndWait();
+
+        return timed("suggest", () -> searchSession.search(Shop.class)
+                .select(f -> f.composite()
+                        .from(f.id(Long.class), f.field("name", String.class))
+                        .as(ShopSuggestion::new))
+                .where(f -> {
+                    // every typed word must be the beginning of a word of the name
+                    SearchFilterBuilder filters = SearchFilterBuilder.with(f);
+                    for (String word : prefix.split("\\s+")) {
+                        filters.must(f.match().field("name_suggest").matching(word));
+                    }
+                    return filters.build();
+                })
+                .sort(f -> f.score().then().field("name_sort"))
+                .fetch(limit))
+                .hits();
+    }
+
+    /**
+     * Runs a search and records its duration (shopapp.search, with the loading of the
+     * entities from the database) and the time spent in Elasticsearch (shopapp.search.took).
+     */
+    private <T> SearchResult<T> timed(String search, Supplier<SearchResult<T>> fetch) {
+        SearchResult<T> result = Timer.builder("shopapp.search")
+                .description("Searches, including the loading of the hits")
+                .tag("search", search)
+                .register(meterRegistry)
+                .record(fetch);
+        Timer.builder("shopapp.search.took")
+                .description("Time spent by Elasticsearch on the searches")
+                .tag("search", search)
+                .register(meterRegistry)
+                .record(result.took());
+        return result;
+    }
+
+    // above the threshold, the total is a lower bound
+    private <T> SearchResultPage<T> page(SearchResult<T> result, Pageable pageable, Map<String, Map<?, Long>> facets) {
+        return new SearchResultPage<>(
+                result.hits(),
+                pageable,
+                result.total().hitCountLowerBound(),
+                result.total().isHitCountExact(),
+                facets
+        );
     }
-}
\ No newline at end of file
+}
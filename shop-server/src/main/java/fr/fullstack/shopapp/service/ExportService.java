@@ -0,0 +1,183 @@
+package fr.fullstack.shopapp.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import fr.fullstack.shopapp.model.Category;
+import fr.fullstack.shopapp.model.Locale;
+import fr.fullstack.shopapp.model.LocalizedProduct;
+import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.model.Shop;
+import fr.fullstack.shopapp.repository.ProductRepository;
+import fr.fullstack.shopapp.repository.ShopRepository;
+import fr.fullstack.shopapp.util.Csv;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Export of the whole catalog, one line per entity. The entities are read through a
+ * database cursor and written by chunks: the memory used does not depend on the
+ * number of exported entities.
+ */
+@Service
+public class ExportService {
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private static final List<String> SHOP_COLUMNS = List.of(
+            "id", "name", "created_at", "in_vacations", "nb_products", "nb_categories", "opening_hours");
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // entities written between two em.clear(), the lazy collections of a chunk are loaded by batches
+    @Value("${shop.export.chunk-size:500}")
+    private int chunkSize;
+
+    public static List<String> productColumns() {
+        List<String> columns = new ArrayList<String>(List.of("id", "price", "shop_id", "category_ids"));
+        for (Locale locale : Locale.values()) {
+            columns.add("name_" + locale.name().toLowerCase());
+            columns.add("description_" + locale.name().toLowerCase());
+        }
+        return columns;
+    }
+
+    public void exportProducts(Format format, OutputStream out) throws IOException {
+        Function<Product, String> line = format == Format.CSV
+                ? product -> Csv.line(productRow(product))
+                : json(Product.class);
+        export(productRepository::streamAll, format == Format.CSV ? productColumns() : null, line, out);
+    }
+
+    public void exportShops(Format format, OutputStream out) throws IOException {
+        Function<Shop, String> line = format == Format.CSV
+                ? shop -> Csv.line(shopRow(shop))
+                : json(Shop.class);
+        export(shopRepository::streamAll, format == Format.CSV ? SHOP_COLUMNS : null, line, out);
+    }
+
+    private <T> void export(Supplier<Stream<T>> query, List<String> header, Function<T, String> line, OutputStream out)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (header != null) {
+            writer.write(Csv.line(header));
+            writer.write('\n');
+        }
+
+        // an error must reach the server: once the response is committed, it closes the connection
+        // before the end of the response and the client cannot take a truncated export for a
+        // complete one (see ExportController for the timeout)
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        try {
+            transaction.executeWithoutResult(status -> {
+                try (Stream<T> stream = query.get()) {
+                    List<T> chunk = new ArrayList<T>(chunkSize);
+                    Iterator<T> iterator = stream.iterator();
+                    while (iterator.hasNext()) {
+                        chunk.add(iterator.next());
+                        if (chunk.size() == chunkSize) {
+                            writeChunk(chunk, line, writer);
+                        }
+                    }
+                    writeChunk(chunk, line, writer);
+                } catch (IOException e) {
+                    // the client went away
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private <T> Function<T, String> json(Class<T> type) {
+        ObjectWriter writer = objectMapper.writerFor(type);
+        return entity -> {
+            try {
+                return writer.writeValueAsString(entity);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private List<Object> productRow(Product product) {
+        List<Object> row = new ArrayList<Object>();
+        row.add(product.getId());
+        row.add(product.getPrice());
+        row.add(product.getShop() == null ? null : product.getShop().getId());
+        row.add(product.getCategories().stream()
+                .map(Category::getId)
+                .map(String::valueOf)
+                .collect(Collectors.joining("|")));
+        for (Locale locale : Locale.values()) {
+            LocalizedProduct localizedProduct = product.getLocalizedProducts().stream()
+                    .filter(o -> locale.name().equals(o.getLocale()))
+                    .findFirst()
+                    .orElse(null);
+            row.add(localizedProduct == null ? null : localizedProduct.getName());
+            row.add(localizedProduct == null ? null : localizedProduct.getDescription());
+        }
+        return row;
+    }
+
+    private List<Object> shopRow(Shop shop) {
+        return Arrays.asList(
+                shop.getId(),
+                shop.getName(),
+                shop.getCreatedAt(),
+                shop.getInVacations(),
+                shop.getNbProducts(),
+                shop.getNbCategories(),
+                shop.getOpeningHoursSummary()
+        );
+    }
+
+    private <T> void writeChunk(List<T> chunk, Function<T, String> line, Writer writer) throws IOException {
+        for (T entity : chunk) {
+            writer.write(line.apply(entity));
+            writer.write('\n');
+        }
+        writer.flush();
+        chunk.clear();
+        // the written entities are not needed anymore
+        em.clear();
+    }
+}
@@ -0,0 +1,491 @@
+package fr.fullstack.shopapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.fullstack.shopapp.dto.BatchItemResult;
+import fr.fullstack.shopapp.model.Category;
+import fr.fullstack.shopapp.model.ImportJob;
+import fr.fullstack.shopapp.model.ImportJobStatus;
+import fr.fullstack.shopapp.model.IndexingEventType;
+import fr.fullstack.shopapp.model.Locale;
+import fr.fullstack.shopapp.model.LocalizedProduct;
+import fr.fullstack.shopapp.model.OpeningHoursShop;
+import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.model.Shop;
+import fr.fullstack.shopapp.repository.ImportJobRepository;
+import fr.fullstack.shopapp.util.Csv;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bulk import of shops or products from NDJSON (one JSON document per line, as
+ * produced by the export) or CSV (the columns of the export).
+ * The input is parsed incrementally by the calling thread and handed to a writer
+ * thread through a bounded queue: when the database is slower than the parser, the
+ * parser waits instead of buffering the input. The writer validates each chunk,
+ * writes the valid rows and updates the import job in one transaction, so an
+ * interrupted import can be resumed after its last committed chunk.
+ */
+@Service
+public class ImportService {
+    public enum Target {
+        PRODUCTS, SHOPS
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportService.class);
+
+    private static final Chunk END = new Chunk(List.of());
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Autowired
+    private ImportJobRepository importJobRepository;
+
+    @Autowired
+    private IndexingOutboxService indexingOutboxService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OpeningHoursService openingHoursService;
+
+    @Autowired
+    private ProductBatchService productBatchService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Validator validator;
+
+    @Value("${shop.import.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int flushSize;
+
+    // chunks parsed in advance, at most
+    @Value("${shop.import.queue-capacity:4}")
+    private int queueCapacity;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private ExecutorService writers;
+
+    @PostConstruct
+    public void init() {
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name("import-writer-", 0).factory()
+                : Thread.ofPlatform().name("import-writer-", 0).factory();
+        writers = Executors.newThreadPerTaskExecutor(threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
+    }
+
+    public ImportJob getJob(long id) throws Exception {
+        Optional<ImportJob> job = importJobRepository.findById(id);
+        if (!job.isPresent()) {
+            throw new Exception("Import avec id " + id + " non trouvé");
+        }
+        return job.get();
+    }
+
+    /**
+     * Imports the input and returns the import job once done. With resumeJobId, the rows
+     * committed by this previous import of the same input are skipped.
+     */
+    public ImportJob importData(
+            Target target, ExportService.Format format, InputStream in, String source, Optional<Long> resumeJobId
+    ) throws Exception {
+        ImportJob job = startJob(target, format, source, resumeJobId);
+        long jobId = job.getId();
+        long skippedRows = job.getCommittedRows();
+
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<Chunk>(queueCapacity);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Future<?> writer = writers.submit(() -> {
+            write(jobId, target, queue, cancelled);
+            return null;
+        });
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+            Map<String, Integer> header = format == ExportService.Format.CSV ? readHeader(reader) : null;
+
+            long rowNumber = 0;
+            List<Row> rows = new ArrayList<Row>(chunkSize);
+            Object record;
+            while ((record = readRecord(reader, format)) != null) {
+                rowNumber++;
+                if (rowNumber <= skippedRows) {
+                    continue;
+                }
+                rows.add(toRow(rowNumber, target, record, header));
+                if (rows.size() == chunkSize) {
+                    put(queue, new Chunk(rows), writer);
+                    rows = new ArrayList<Row>(chunkSize);
+                }
+            }
+            if (!rows.isEmpty()) {
+                put(queue, new Chunk(rows), writer);
+            }
+            put(queue, END, writer);
+            writer.get();
+        } catch (ExecutionException e) {
+            // the writer has already marked the job as failed
+            LOGGER.error("Import {} failed", jobId, e.getCause());
+        } catch (Exception e) {
+            // the failure is recorded here only, with the error of the input
+            cancelled.set(true);
+            writer.cancel(true);
+            fail(jobId, e);
+            LOGGER.error("Import {} failed", jobId, e);
+        }
+        return getJob(jobId);
+    }
+
+    private void fail(long jobId, Exception e) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ImportJob job = importJobRepository.findById(jobId).get();
+            job.setStatus(ImportJobStatus.FAILED);
+            job.setLastError(truncate(e.getMessage()));
+        });
+    }
+
+    private List<OpeningHoursShop> parseOpeningHours(String summary) {
+        // format of Shop.getOpeningHoursSummary(): "1 09:00-18:00, 2 09:00-12:00"
+        List<OpeningHoursShop> openingHours = new ArrayList<OpeningHoursShop>();
+        if (summary == null || summary.isBlank()) {
+            return openingHours;
+        }
+        for (String item : summary.split(",")) {
+            String[] dayAndHours = item.trim().split(" ");
+            String[] hours = dayAndHours[1].split("-");
+            OpeningHoursShop openingHoursShop = new OpeningHoursShop();
+            openingHoursShop.setDay(Integer.parseInt(dayAndHours[0]));
+            openingHoursShop.setOpenAt(LocalTime.parse(hours[0]));
+            openingHoursShop.setCloseAt(LocalTime.parse(hours[1]));
+            openingHours.add(openingHoursShop);
+        }
+        return openingHours;
+    }
+
+    private Product productFromCsv(List<String> values, Map<String, Integer> header) {
+        Product product = new Product();
+        product.setPrice(new BigDecimal(value(values, header, "price")));
+
+        String shopId = value(values, header, "shop_id");
+        if (shopId != null && !shopId.isEmpty()) {
+            Shop shop = new Shop();
+            shop.setId(Long.parseLong(shopId));
+            product.setShop(shop);
+        }
+
+        String categoryIds = value(values, header, "category_ids");
+        if (categoryIds != null && !categoryIds.isEmpty()) {
+            for (String categoryId : categoryIds.split("\\|")) {
+                Category category = new Category();
+                category.setId(Long.parseLong(categoryId.trim()));
+                product.getCategories().add(category);
+            }
+        }
+
+        for (Locale locale : Locale.values()) {
+            String name = value(values, header, "name_" + locale.name().toLowerCase());
+            if (name == null || name.isEmpty()) {
+                continue;
+            }
+            LocalizedProduct localizedProduct = new LocalizedProduct();
+            localizedProduct.setLocale(locale.name());
+            localizedProduct.setName(name);
+            String description = value(values, header, "description_" + locale.name().toLowerCase());
+            localizedProduct.setDescription(description == null || description.isEmpty() ? null : description);
+            product.getLocalizedProducts().add(localizedProduct);
+        }
+        return product;
+    }
+
+    private void put(BlockingQueue<Chunk> queue, Chunk chunk, Future<?> writer) throws Exception {
+        // blocks while the writer is behind, unless it has stopped
+        while (!queue.offer(chunk, 1, TimeUnit.SECONDS)) {
+            if (writer.isDone()) {
+                writer.get();
+                throw new Exception("L'écriture de l'import s'est arrêtée");
+            }
+        }
+    }
+
+    private Map<String, Integer> readHeader(BufferedReader reader) throws Exception {
+        List<String> columns = Csv.read(reader);
+        if (columns == null) {
+            throw new Exception("Le fichier CSV est vide");
+        }
+        Map<String, Integer> header = new HashMap<String, Integer>();
+        for (int i = 0; i < columns.size(); i++) {
+            header.put(columns.get(i).trim().toLowerCase(), i);
+        }
+        return header;
+    }
+
+    // next non-empty line (NDJSON) or record (CSV), null at the end of the input
+    private Object readRecord(BufferedReader reader, ExportService.Format format) throws IOException {
+        if (format == ExportService.Format.CSV) {
+            List<String> values;
+            do {
+                values = Csv.read(reader);
+            } while (values != null && values.size() == 1 && values.get(0).isBlank());
+            return values;
+        }
+        String line;
+        do {
+            line = reader.readLine();
+        } while (line != null && line.isBlank());
+        return line;
+    }
+
+    private Shop shopFromCsv(List<String> values, Map<String, Integer> header) {
+        Shop shop = new Shop();
+        shop.setName(value(values, header, "name"));
+        shop.setInVacations(Boolean.parseBoolean(value(values, header, "in_vacations")));
+        shop.setOpeningHours(parseOpeningHours(value(values, header, "opening_hours")));
+        return shop;
+    }
+
+    private ImportJob startJob(
+            Target target, ExportService.Format format, String source, Optional<Long> resumeJobId
+    ) throws Exception {
+        ImportJob job;
+        if (resumeJobId.isPresent()) {
+            job = getJob(resumeJobId.get());
+            if (!job.getTarget().equals(target.name()) || !job.getFormat().equals(format.name())) {
+                throw new Exception("L'import " + job.getId() + " ne porte pas sur les mêmes données");
+            }
+            if (job.getStatus() == ImportJobStatus.COMPLETED) {
+                throw new Exception("L'import " + job.getId() + " est déjà terminé");
+            }
+        } else {
+            job = new ImportJob();
+            job.setTarget(target.name());
+            job.setFormat(format.name());
+            job.setSource(source);
+        }
+        job.setStatus(ImportJobStatus.RUNNING);
+        job.setStartedAt(Instant.now());
+        job.setCompletedAt(null);
+        job.setLastError(null);
+        return importJobRepository.save(job);
+    }
+
+    private Row toRow(long rowNumber, Target target, Object record, Map<String, Integer> header) {
+        try {
+            Object entity;
+            if (header == null) {
+                Class<?> type = target == Target.SHOPS ? Shop.class : Product.class;
+                entity = objectMapper.readValue((String) record, type);
+            } else {
+                @SuppressWarnings("unchecked")
+                List<String> values = (List<String>) record;
+                entity = target == Target.SHOPS ? shopFromCsv(values, header) : productFromCsv(values, header);
+            }
+            return new Row(rowNumber, entity, null);
+        } catch (Exception e) {
+            return new Row(rowNumber, null, "illisible: " + e.getMessage());
+        }
+    }
+
+    private String truncate(String message) {
+        return message == null || message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+
+    private String value(List<String> values, Map<String, Integer> header, String column) {
+        Integer index = header.get(column);
+        return index == null || index >= values.size() ? null : values.get(index);
+    }
+
+    private void write(long jobId, Target target, BlockingQueue<Chunk> queue, AtomicBoolean cancelled)
+            throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        long start = System.nanoTime();
+        long rows = 0;
+        try {
+            Chunk chunk;
+            while ((chunk = queue.take()) != END) {
+                Chunk current = chunk;
+                rows += current.rows.size();
+                long handledRows = rows;
+
+                ImportJob job = transaction.execute(status -> {
+                    List<String> errors = target == Target.SHOPS
+                            ? writeShops(current.rows)
+                            : writeProducts(current.rows);
+
+                    // throughput of this run, including the validation and the writes of this chunk
+                    double seconds = Math.max((System.nanoTime() - start) / 1e9, 0.001);
+                    ImportJob updated = importJobRepository.findById(jobId).get();
+                    updated.setCommittedRows(updated.getCommittedRows() + current.rows.size());
+                    updated.setImportedRows(updated.getImportedRows() + current.rows.size() - errors.size());
+                    updated.setRejectedRows(updated.getRejectedRows() + errors.size());
+                    updated.setRowsPerSecond(handledRows / seconds);
+                    if (!errors.isEmpty()) {
+                        updated.setLastError(truncate(errors.get(errors.size() - 1)));
+                    }
+                    return updated;
+                });
+                LOGGER.info("Import {}: {} rows committed, {} rejected, {} rows/s",
+                        jobId, job.getCommittedRows(), job.getRejectedRows(), Math.round(job.getRowsPerSecond()));
+            }
+
+            transaction.executeWithoutResult(status -> {
+                ImportJob job = importJobRepository.findById(jobId).get();
+                job.setStatus(ImportJobStatus.COMPLETED);
+                job.setCompletedAt(Instant.now());
+            });
+        } catch (Exception e) {
+            // once cancelled, the exception is the interruption, not the cause of the failure
+            if (!cancelled.get()) {
+                fail(jobId, e);
+            }
+            throw e;
+        }
+    }
+
+    // returns the errors of the rejected rows
+    private List<String> writeProducts(List<Row> rows) {
+        List<String> errors = new ArrayList<String>();
+        List<Row> readRows = new ArrayList<Row>();
+        List<Product> products = new ArrayList<Product>();
+        for (Row row : rows) {
+            if (row.error != null) {
+                errors.add(row.error(row.error));
+            } else {
+                readRows.add(row);
+                products.add((Product) row.entity);
+            }
+        }
+
+        boolean[] invalid = new boolean[products.size()];
+        for (BatchItemResult result : productBatchService.validate(products)) {
+            invalid[result.getIndex()] = true;
+            errors.add(readRows.get(result.getIndex()).error(result.getMessage()));
+        }
+        List<Product> valid = new ArrayList<Product>();
+        for (int i = 0; i < products.size(); i++) {
+            if (!invalid[i]) {
+                valid.add(products.get(i));
+            }
+        }
+        if (!valid.isEmpty()) {
+            productBatchService.persistProducts(valid);
+        }
+        return errors;
+    }
+
+    private List<String> writeShops(List<Row> rows) {
+        List<String> errors = new ArrayList<String>();
+        List<Long> ids = new ArrayList<Long>();
+        for (Row row : rows) {
+            if (row.error != null) {
+                errors.add(row.error(row.error));
+                continue;
+            }
+
+            Shop shop = (Shop) row.entity;
+            List<String> messages = new ArrayList<String>();
+            for (ConstraintViolation<Shop> violation : validator.validate(shop)) {
+                messages.add(violation.getPropertyPath() + ": " + violation.getMessage());
+            }
+            if (messages.isEmpty()) {
+                List<String> overlaps = openingHoursService.findOverlappingHours(shop.getOpeningHours());
+                if (!overlaps.isEmpty()) {
+                    messages.add("Les horaires de la boutique se chevauchent : " + String.join(", ", overlaps));
+                }
+            }
+            if (!messages.isEmpty()) {
+                errors.add(row.error(String.join(", ", messages)));
+                continue;
+            }
+
+            // creation only: the ids come from the sequences
+            shop.setId(0);
+            for (OpeningHoursShop openingHours : shop.getOpeningHours()) {
+                openingHours.setId(0);
+            }
+            em.persist(shop);
+            ids.add(shop.getId());
+            if (ids.size() % flushSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+        indexingOutboxService.recordAll(Shop.class, ids, IndexingEventType.ADD_OR_UPDATE);
+        return errors;
+    }
+
+    private static class Chunk {
+        private final List<Row> rows;
+
+        private Chunk(List<Row> rows) {
+            this.rows = rows;
+        }
+    }
+
+    // a parsed input row: the entity to import, or the reason why it could not be read
+    private static class Row {
+        private final Object entity;
+
+        private final String error;
+
+        private final long number;
+
+        private Row(long number, Object entity, String error) {
+            this.number = number;
+            this.entity = entity;
+            this.error = error;
+        }
+
+        private String error(String message) {
+            return "ligne " + number + ": " + message;
+        }
+    }
+}
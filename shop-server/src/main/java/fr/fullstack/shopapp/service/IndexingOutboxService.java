@@ -0,0 +1,277 @@
+package fr.fullstack.shopapp.service;
+
+import fr.fullstack.shopapp.dto.IndexingOutboxStatus;
+import fr.fullstack.shopapp.model.IndexingEvent;
+import fr.fullstack.shopapp.model.IndexingEventType;
+import fr.fullstack.shopapp.repository.IndexingEventRepository;
+import fr.fullstack.shopapp.util.IndexedEntities;
+import org.hibernate.search.mapper.orm.Search;
+import org.hibernate.search.mapper.orm.work.SearchIndexingPlan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Elasticsearch indexing through a database outbox: the services record the changes
+ * of the indexed entities in their own transaction, a background worker sends them
+ * to Elasticsearch in batches. Writes never wait for (nor fail because of) Elasticsearch.
+ *
+ * When a batch fails, its events are retried one by one so that only the failing ones
+ * are charged an attempt; they wait for their next one with an exponential backoff.
+ * After a few failures in a row, Elasticsearch is considered down: the rest of the batch
+ * is postponed as long as the last failed event, without being charged an attempt.
+ */
+@Service
+public class IndexingOutboxService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexingOutboxService.class);
+
+    // consecutive failures of single events after which Elasticsearch is considered down
+    private static final int OUTAGE_FAILURES = 3;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Autowired
+    private IndexingEventRepository indexingEventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${shop.indexing.outbox.backoff:1000}")
+    private long backoffMillis;
+
+    @Value("${shop.indexing.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${shop.indexing.outbox.max-backoff:300000}")
+    private long maxBackoffMillis;
+
+    @Value("${shop.indexing.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    private final AtomicLong failedTotal = new AtomicLong();
+
+    private volatile Instant lastDrainAt;
+
+    private final AtomicLong processedTotal = new AtomicLong();
+
+    @Scheduled(fixedDelayString = "${shop.indexing.outbox.poll-interval:1000}")
+    public void drain() {
+        // keep draining while full batches come back, to catch up after an outage
+        while (drainBatch() == batchSize) {
+            LOGGER.debug("Indexing outbox: full batch processed, draining again");
+        }
+        lastDrainAt = Instant.now();
+    }
+
+    public IndexingOutboxStatus getStatus() {
+        Instant oldestPending = indexingEventRepository.findOldestPendingCreatedAt(maxAttempts);
+        Long lagMillis = oldestPending == null ? null : Duration.between(oldestPending, Instant.now()).toMillis();
+        return new IndexingOutboxStatus(
+                indexingEventRepository.countByAttemptsLessThan(maxAttempts),
+                indexingEventRepository.countByAttemptsGreaterThanEqual(maxAttempts),
+                lagMillis,
+                processedTotal.get(),
+                failedTotal.get(),
+                lastDrainAt
+        );
+    }
+
+    @Transactional
+    public void record(Class<?> entityType, long entityId, IndexingEventType type) {
+        IndexingEvent event = new IndexingEvent();
+        event.setEntityType(entityType.getSimpleName());
+        event.setEntityId(entityId);
+        event.setType(type);
+        event.setCreatedAt(Instant.now());
+        indexingEventRepository.save(event);
+    }
+
+    // batch requests record their events with JDBC batches: the identity id of the
+    // outbox would make Hibernate insert them one by one
+    @Transactional
+    public void recordAll(Class<?> entityType, Collection<Long> entityIds, IndexingEventType type) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO indexing_outbox (entity_type, entity_id, type, created_at, attempts) "
+                        + "VALUES (?, ?, ?, now(), 0)",
+                entityIds,
+                batchSize,
+                (statement, entityId) -> {
+                    statement.setString(1, entityType.getSimpleName());
+                    statement.setLong(2, entityId);
+                    statement.setString(3, type.name());
+                });
+    }
+
+    @Transactional
+    public void recordProductsOfCategory(long categoryId) {
+        indexingEventRepository.enqueueProductsOfCategory(categoryId);
+    }
+
+    @Transactional
+    public void recordProductsOfShop(long shopId) {
+        indexingEventRepository.enqueueProductsOfShop(shopId);
+    }
+
+    @Transactional
+    public int replay(boolean full) {
+        int replayed = indexingEventRepository.resetFailed(maxAttempts);
+        if (full) {
+            replayed += indexingEventRepository.enqueueAllShops();
+            replayed += indexingEventRepository.enqueueAllProducts();
+        }
+        return replayed;
+    }
+
+    private int drainBatch() {
+        List<Long> eventIds = new ArrayList<Long>();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        try {
+            Integer processed = transaction.execute(status -> {
+                List<IndexingEvent> events = indexingEventRepository.lockPendingBatch(maxAttempts, batchSize);
+                for (IndexingEvent event : events) {
+                    eventIds.add(event.getId());
+                }
+                if (events.isEmpty()) {
+                    return 0;
+                }
+
+                index(events);
+                indexingEventRepository.deleteByIdIn(eventIds);
+                return events.size();
+            });
+            processedTotal.addAndGet(processed);
+            return processed;
+        } catch (RuntimeException e) {
+            if (eventIds.isEmpty()) {
+                // nothing was locked (database error), nothing to charge
+                LOGGER.warn("Indexing outbox: cannot read the pending events: {}", e.getMessage());
+                return 0;
+            }
+            LOGGER.warn("Indexing outbox: batch of {} events failed, retrying them one by one: {}",
+                    eventIds.size(), e.getMessage());
+            retryOneByOne(eventIds, e);
+            return 0;
+        }
+    }
+
+    private void markFailed(Collection<Long> eventIds, RuntimeException e) {
+        failedTotal.addAndGet(eventIds.size());
+        String error = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> indexingEventRepository.markFailed(
+                eventIds, error.substring(0, Math.min(error.length(), 1000)), backoffMillis, maxBackoffMillis));
+    }
+
+    private void postpone(Collection<Long> eventIds, RuntimeException e, long failedEventId) {
+        String error = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> indexingEventRepository.postpone(
+                eventIds, error.substring(0, Math.min(error.length(), 1000)), failedEventId));
+    }
+
+    private void retryOneByOne(List<Long> eventIds, RuntimeException batchError) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int consecutiveFailures = 0;
+        for (int i = 0; i < eventIds.size(); i++) {
+            long eventId = eventIds.get(i);
+            try {
+                Integer processed = transaction.execute(status -> {
+                    // taken meanwhile by another instance, or already processed
+                    List<IndexingEvent> events = indexingEventRepository.lockPending(eventId, maxAttempts);
+                    if (events.isEmpty()) {
+                        return 0;
+                    }
+                    index(events);
+                    indexingEventRepository.deleteByIdIn(List.of(eventId));
+                    return 1;
+                });
+                processedTotal.addAndGet(processed);
+                consecutiveFailures = 0;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Indexing outbox: event {} failed: {}", eventId, e.getMessage());
+                markFailed(List.of(eventId), e);
+                if (++consecutiveFailures == OUTAGE_FAILURES && i + 1 < eventIds.size()) {
+                    // not one bad event: the rest of the batch was not attempted, it waits without being
+                    // charged, otherwise an outage would exhaust the attempts of the whole outbox
+                    List<Long> remainingIds = eventIds.subList(i + 1, eventIds.size());
+                    LOGGER.warn("Indexing outbox: Elasticsearch looks down, postponing {} events",
+                            remainingIds.size());
+                    postpone(remainingIds, batchError, eventId);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void index(List<IndexingEvent> events) {
+        // only the last event of an entity matters, events are ordered by id
+        Map<String, Map<Long, IndexingEventType>> latestByType = new LinkedHashMap<>();
+        for (IndexingEvent event : events) {
+            latestByType.computeIfAbsent(event.getEntityType(), type -> new LinkedHashMap<>())
+                    .put(event.getEntityId(), event.getType());
+        }
+
+        SearchIndexingPlan plan = Search.session(em).indexingPlan();
+        for (Map.Entry<String, Map<Long, IndexingEventType>> entry : latestByType.entrySet()) {
+            Class<?> entityType = IndexedEntities.TYPES.get(entry.getKey());
+            if (entityType == null) {
+                LOGGER.warn("Indexing outbox: ignoring events of unknown type {}", entry.getKey());
+                continue;
+            }
+
+            Set<Long> idsToLoad = new LinkedHashSet<Long>();
+            for (Map.Entry<Long, IndexingEventType> event : entry.getValue().entrySet()) {
+                if (event.getValue() == IndexingEventType.DELETE) {
+                    plan.purge(entityType, event.getKey(), null);
+                } else {
+                    idsToLoad.add(event.getKey());
+                }
+            }
+
+            List<?> entities = loadEntities(entityType, idsToLoad);
+            for (Object entity : entities) {
+                idsToLoad.remove(em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity));
+                plan.addOrUpdate(entity);
+            }
+            // entities deleted since the event was recorded
+            for (Long id : idsToLoad) {
+                plan.purge(entityType, id, null);
+            }
+        }
+
+        // the works are grouped in bulk requests by the backend indexing queues, execute
+        // waits for them and fails if one of them failed
+        plan.execute();
+    }
+
+    private List<?> loadEntities(Class<?> entityType, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return em.createQuery("SELECT e FROM " + entityType.getSimpleName() + " e WHERE e.id IN :ids", entityType)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+}
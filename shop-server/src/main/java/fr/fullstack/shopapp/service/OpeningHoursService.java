@@ -1,42 +1,82 @@
 package fr.fullstack.shopapp.service;
 
-import java.time.LocalTime;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import org.springframework.stereotype.Service;
+import fr.fullstack.shopapp.dto.ScheduleInterval;
+import fr.fullstack.shopapp.dto.ShopSchedule;
 import fr.fullstack.shopapp.model.OpeningHoursShop;
+import fr.fullstack.shopapp.model.Shop;
+import fr.fullstack.shopapp.util.WeekMinutes;
+import fr.fullstack.shopapp.util.WeeklySchedule;
 
 @Service
 public class OpeningHoursService {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
 
-    public boolean hasOverlappingHours(List<OpeningHoursShop> openingHours) {
-        for (int i = 0; i < openingHours.size(); i++) {
-            OpeningHoursShop current = openingHours.get(i);
-            for (int j = i + 1; j < openingHours.size(); j++) {
-                OpeningHoursShop next = openingHours.get(j);
-                // verification si les horaires se chevauchent pour le meme jour
-                if (current.getDay() == next.getDay()) {
-                    if (isOverlap(current, next)) {
-                        return true;
-                    }
-                }
-            }
+    // description des chevauchements, par exemple "1 09:00-12:00 / 1 11:00-14:00"
+    public List<String> findOverlappingHours(List<OpeningHoursShop> openingHours) {
+        int[][] intervals = toIntervals(openingHours);
+        List<String> overlaps = new ArrayList<String>();
+        for (WeeklySchedule.Overlap overlap : WeeklySchedule.findOverlaps(intervals[0], intervals[1])) {
+            overlaps.add(format(openingHours.get(overlap.getFirst()))
+                    + " / " + format(openingHours.get(overlap.getSecond())));
         }
-        return false;
+        return overlaps;
+    }
+
+    public ShopSchedule getSchedule(Shop shop, LocalDateTime at) {
+        WeeklySchedule schedule = toSchedule(shop.getOpeningHours());
+        int minute = WeekMinutes.of(at);
+        int untilOpening = schedule.minutesUntilOpening(minute);
+        int untilClosing = schedule.minutesUntilClosing(minute);
+
+        int[] starts = schedule.getStarts();
+        int[] ends = schedule.getEnds();
+        List<ScheduleInterval> intervals = new ArrayList<ScheduleInterval>(starts.length);
+        for (int i = 0; i < starts.length; i++) {
+            intervals.add(new ScheduleInterval(
+                    WeekMinutes.toDay(starts[i]), WeekMinutes.toTime(starts[i]),
+                    WeekMinutes.toDay(ends[i]), WeekMinutes.toTime(ends[i])));
+        }
+
+        return new ShopSchedule(
+                shop.getId(),
+                at,
+                untilOpening == 0,
+                untilOpening > 0 ? at.plusMinutes(untilOpening) : null,
+                untilClosing > 0 ? at.plusMinutes(untilClosing) : null,
+                intervals
+        );
     }
 
-    private boolean isOverlap(OpeningHoursShop first, OpeningHoursShop second) {
-        int firstOpenMinutes = convertToMinutes(first.getOpenAt());
-        int firstCloseMinutes = convertToMinutes(first.getCloseAt());
-        int secondOpenMinutes = convertToMinutes(second.getOpenAt());
-        int secondCloseMinutes = convertToMinutes(second.getCloseAt());
-    
-        // verification si les horaires se chevauchent
-        return !(firstCloseMinutes <= secondOpenMinutes || secondCloseMinutes <= firstOpenMinutes);
+    public boolean hasOverlappingHours(List<OpeningHoursShop> openingHours) {
+        int[][] intervals = toIntervals(openingHours);
+        return !WeeklySchedule.findOverlaps(intervals[0], intervals[1]).isEmpty();
+    }
+
+    public WeeklySchedule toSchedule(List<OpeningHoursShop> openingHours) {
+        int[][] intervals = toIntervals(openingHours);
+        return WeeklySchedule.of(intervals[0], intervals[1]);
     }
-    
 
-    // convertit l'heure en minutes
-    private int convertToMinutes(LocalTime time) {
-        return time.getHour() * 60 + time.getMinute();
+    private String format(OpeningHoursShop hours) {
+        return hours.getDay() + " " + hours.getOpenAt().format(TIME_FORMAT)
+                + "-" + hours.getCloseAt().format(TIME_FORMAT);
+    }
+
+    // debuts et fins en minutes de la semaine, une fermeture avant l'ouverture est le lendemain
+    private int[][] toIntervals(List<OpeningHoursShop> openingHours) {
+        int[] starts = new int[openingHours.size()];
+        int[] ends = new int[openingHours.size()];
+        for (int i = 0; i < openingHours.size(); i++) {
+            OpeningHoursShop hours = openingHours.get(i);
+            int day = (int) hours.getDay();
+            starts[i] = WeekMinutes.of(day, hours.getOpenAt());
+            ends[i] = WeekMinutes.closing(day, hours.getOpenAt(), hours.getCloseAt());
+        }
+        return new int[][] {starts, ends};
     }
 }
@@ -0,0 +1,282 @@
+package fr.fullstack.shopapp.service;
+
+import fr.fullstack.shopapp.dto.BatchItemResult;
+import fr.fullstack.shopapp.dto.BatchResult;
+import fr.fullstack.shopapp.model.Category;
+import fr.fullstack.shopapp.model.IndexingEventType;
+import fr.fullstack.shopapp.model.LocalizedProduct;
+import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.model.Shop;
+import fr.fullstack.shopapp.repository.CategoryRepository;
+import fr.fullstack.shopapp.repository.ProductRepository;
+import fr.fullstack.shopapp.repository.ShopRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creation and deletion of products by batches, for the catalog imports.
+ * The products are written with JDBC batches (hibernate.jdbc.batch_size), the
+ * shop counters and the indexing outbox are updated once for the whole batch.
+ */
+@Service
+public class ProductBatchService {
+    // max number of ids in an IN (...) clause
+    private static final int IN_CLAUSE_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private IndexingOutboxService indexingOutboxService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ShopCounterService shopCounterService;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private Validator validator;
+
+    // the persistence context is flushed and cleared every jdbc batch
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int flushSize;
+
+    @Value("${shop.products.batch.max-size:10000}")
+    private int maxBatchSize;
+
+    /**
+     * Creates all the products, or none of them when at least one is invalid:
+     * the result then lists the invalid products.
+     */
+    @Transactional
+    public BatchResult createProducts(List<Product> products) throws Exception {
+        checkBatchSize(products);
+
+        List<BatchItemResult> errors = validate(products);
+        if (!errors.isEmpty()) {
+            return new BatchResult(errors);
+        }
+
+        List<Long> ids = persistProducts(products);
+        List<BatchItemResult> items = new ArrayList<BatchItemResult>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            items.add(BatchItemResult.of(i, ids.get(i), BatchItemResult.Status.CREATED));
+        }
+        return new BatchResult(items);
+    }
+
+    /**
+     * Inserts products which have been validated, returns their ids in the same order.
+     */
+    @Transactional
+    public List<Long> persistProducts(List<Product> products) {
+        List<Long> ids = new ArrayList<Long>(products.size());
+        Map<Long, Long> addedByShop = new HashMap<Long, Long>();
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            // creation only: the ids come from the sequences
+            product.setId(0);
+            for (LocalizedProduct localizedProduct : orEmpty(product.getLocalizedProducts())) {
+                localizedProduct.setId(0);
+            }
+            // the shop and the categories have been checked, references avoid loading them
+            if (product.getShop() != null) {
+                long shopId = product.getShop().getId();
+                product.setShop(em.getReference(Shop.class, shopId));
+                addedByShop.merge(shopId, 1L, Long::sum);
+            }
+            List<Category> categories = new ArrayList<Category>();
+            for (Category category : orEmpty(product.getCategories())) {
+                categories.add(em.getReference(Category.class, category.getId()));
+            }
+            product.setCategories(categories);
+
+            em.persist(product);
+            ids.add(product.getId());
+
+            if ((i + 1) % flushSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+
+        shopCounterService.onProductsChanged(addedByShop);
+        indexingOutboxService.recordAll(Product.class, ids, IndexingEventType.ADD_OR_UPDATE);
+        return ids;
+    }
+
+    /**
+     * Deletes the existing products of the list, the others are reported as not found.
+     */
+    @Transactional
+    public BatchResult deleteProducts(List<Long> ids) throws Exception {
+        checkBatchSize(ids);
+
+        Set<Long> distinctIds = new LinkedHashSet<Long>(ids);
+        distinctIds.remove(null);
+        Map<Long, Long> shopIdByProduct = new HashMap<Long, Long>();
+        for (List<Long> chunk : chunks(distinctIds)) {
+            for (Object[] row : productRepository.findShopIdsByIdIn(chunk)) {
+                shopIdByProduct.put((Long) row[0], (Long) row[1]);
+            }
+        }
+
+        List<BatchItemResult> items = new ArrayList<BatchItemResult>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            if (id != null && shopIdByProduct.containsKey(id)) {
+                items.add(BatchItemResult.of(i, id, BatchItemResult.Status.DELETED));
+            } else {
+                items.add(new BatchItemResult(i, id, BatchItemResult.Status.NOT_FOUND,
+                        "Produit avec id " + id + " non trouvé"));
+            }
+        }
+
+        // set-based deletes: the join tables first, then the products and their localized names
+        em.flush();
+        for (List<Long> chunk : chunks(shopIdByProduct.keySet())) {
+            List<Long> localizedProductIds = productRepository.findLocalizedProductIds(chunk);
+            productRepository.deleteCategoryLinks(chunk);
+            productRepository.deleteLocalizedProductLinks(chunk);
+            productRepository.deleteByIdIn(chunk);
+            for (List<Long> localizedChunk : chunks(localizedProductIds)) {
+                productRepository.deleteLocalizedProductsByIdIn(localizedChunk);
+            }
+        }
+
+        Map<Long, Long> removedByShop = new HashMap<Long, Long>();
+        for (Long shopId : shopIdByProduct.values()) {
+            if (shopId != null) {
+                removedByShop.merge(shopId, -1L, Long::sum);
+            }
+        }
+        shopCounterService.onProductsChanged(removedByShop);
+        indexingOutboxService.recordAll(Product.class, shopIdByProduct.keySet(), IndexingEventType.DELETE);
+        return new BatchResult(items);
+    }
+
+    private void checkBatchSize(List<?> items) throws Exception {
+        if (items == null || items.isEmpty()) {
+            throw new Exception("La liste doit contenir au moins un élément");
+        }
+        if (items.size() > maxBatchSize) {
+            throw new Exception("La liste ne doit pas contenir plus de " + maxBatchSize + " éléments");
+        }
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+
+    private List<List<Long>> chunks(Iterable<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<List<Long>>();
+        List<Long> chunk = new ArrayList<Long>(IN_CLAUSE_SIZE);
+        for (Long id : ids) {
+            chunk.add(id);
+            if (chunk.size() == IN_CLAUSE_SIZE) {
+                chunks.add(chunk);
+                chunk = new ArrayList<Long>(IN_CLAUSE_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Bean validation, french name and existence of the shops and categories of every
+     * product: returns the invalid products only.
+     */
+    public List<BatchItemResult> validate(List<Product> products) {
+        Set<Long> shopIds = new HashSet<Long>();
+        Set<Long> categoryIds = new HashSet<Long>();
+        for (Product product : products) {
+            if (product == null) {
+                continue;
+            }
+            // "categories": null or "localizedProducts": null are read as empty lists
+            if (product.getCategories() == null) {
+                product.setCategories(new ArrayList<Category>());
+            }
+            if (product.getLocalizedProducts() == null) {
+                product.setLocalizedProducts(new ArrayList<LocalizedProduct>());
+            }
+            if (product.getShop() != null) {
+                shopIds.add(product.getShop().getId());
+            }
+            for (Category category : product.getCategories()) {
+                categoryIds.add(category.getId());
+            }
+        }
+        Set<Long> existingShopIds = new HashSet<Long>();
+        for (List<Long> chunk : chunks(shopIds)) {
+            existingShopIds.addAll(shopRepository.findExistingIds(chunk));
+        }
+        Set<Long> existingCategoryIds = new HashSet<Long>();
+        for (List<Long> chunk : chunks(categoryIds)) {
+            existingCategoryIds.addAll(categoryRepository.findExistingIds(chunk));
+        }
+
+        List<BatchItemResult> errors = new ArrayList<BatchItemResult>();
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            if (product == null) {
+                errors.add(BatchItemResult.invalid(i, "Le produit ne peut pas être nul"));
+                continue;
+            }
+
+            List<String> messages = new ArrayList<String>();
+            for (ConstraintViolation<Product> violation : validator.validate(product)) {
+                messages.add(violation.getPropertyPath() + ": " + violation.getMessage());
+            }
+            try {
+                productService.checkLocalizedProducts(product);
+            } catch (Exception e) {
+                // a null locale is already reported by the bean validation
+                if (e.getMessage() != null) {
+                    messages.add(e.getMessage());
+                }
+            }
+            if (product.getShop() != null && !existingShopIds.contains(product.getShop().getId())) {
+                messages.add("Boutique avec id " + product.getShop().getId() + " non trouvé");
+            }
+            for (Category category : product.getCategories()) {
+                if (!existingCategoryIds.contains(category.getId())) {
+                    messages.add("Catégorie avec id " + category.getId() + " non trouvé");
+                }
+            }
+
+            if (!messages.isEmpty()) {
+                errors.add(BatchItemResult.invalid(i, String.join(", ", messages)));
+            }
+        }
+        return errors;
+    }
+}
@@ -1,85 +1,181 @@
 package fr.fullstack.shopapp.service;
 
+import fr.fullstack.shopapp.config.ReplicaRoutingDataSource;
+import fr.fullstack.shopapp.dto.KeysetSlice;
+import fr.fullstack.shopapp.dto.PriceBucket;
+import fr.fullstack.shopapp.model.IndexingEventType;
 import fr.fullstack.shopapp.model.LocalizedProduct;
 import fr.fullstack.shopapp.model.Product;
 import fr.fullstack.shopapp.repository.ProductRepository;
+import fr.fullstack.shopapp.util.ETags;
+import fr.fullstack.shopapp.util.JsonGraphs;
+import fr.fullstack.shopapp.util.KeysetCursor;
+import fr.fullstack.shopapp.util.Prices;
+import io.micrometer.core.annotation.Timed;
+import org.hibernate.jpa.SpecHints;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 @Service
+@Timed("shopapp.service")
 public class ProductService {
+    private static final int MAX_PRICE_BUCKETS = 100;
+
     @PersistenceContext
     private EntityManager em;
 
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ShopCounterService shopCounterService;
+
+    @Autowired
+    private IndexingOutboxService indexingOutboxService;
+
     @Transactional
     public Product createProduct(Product product) throws Exception {
-        // Check that product exists at least in french and check name's length
-        try {
-            checkLocalizedProducts(product);
-        } catch (Exception e) {
-            throw new Exception(e.getMessage());
-        }
-
-        try {
-            Product newProduct = productRepository.save(product);
-            em.flush();
-            em.refresh(newProduct);
-            return newProduct;
-        } catch (Exception e) {
-            throw new Exception(e.getMessage());
-        }
+        return JsonGraphs.product(saveProduct(product, null));
     }
 
+    @Transactional
     public void deleteProductById(long id) throws Exception {
         try {
-            getProduct(id);
+            Product product = getProduct(id);
+            Long shopId = getShopId(product);
             productRepository.deleteById(id);
+            shopCounterService.onProductChanged(shopId, null);
+            indexingOutboxService.record(Product.class, id, IndexingEventType.DELETE);
         } catch (Exception e) {
             throw new Exception(e.getMessage());
         }
     }
 
+    @Transactional(readOnly = true)
     public Product getProductById(long id) throws Exception {
         try {
-            return getProduct(id);
+            return JsonGraphs.product(getProduct(id));
         } catch (Exception e) {
             throw new Exception(e.getMessage());
         }
     }
 
-    public Page<Product> getShopProductList(Optional<Long> shopId, Optional<Long> categoryId, Pageable pageable) {
-        if (shopId.isPresent() && categoryId.isPresent()) {
-            return productRepository.findByShopAndCategory(shopId.get(), categoryId.get(), pageable);
-        }
+    // the product read again from the primary, without the second-level cache which it refreshes: the
+    // cache of this instance, or the replica, may still give the product before a write made through
+    // another instance (see HttpCachePolicies)
+    @Transactional(readOnly = true)
+    public Product reloadProductById(long id) throws Exception {
+        // CacheMode.REFRESH, as the properties of the session: find reads them, not its cache mode
+        em.setProperty(SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS);
+        em.setProperty(SpecHints.HINT_SPEC_CACHE_STORE_MODE, CacheStoreMode.REFRESH);
+        // the first statement takes the connection of the transaction
+        ReplicaRoutingDataSource.onPrimary(() -> productRepository.findById(id));
+        return getProductById(id);
+    }
+
+    // the versions are read from the primary, a lagging replica would answer 304 for a changed product
+    @Transactional(readOnly = true)
+    public Optional<String> getProductETag(long id) {
+        return ReplicaRoutingDataSource.onPrimary(() -> ETags.of("product", id, productRepository.findVersionById(id)));
+    }
 
+    @Transactional(readOnly = true)
+    public String getShopProductListETag(Optional<Long> shopId) {
+        // the category filter only narrows the products of the shop
         if (shopId.isPresent()) {
-            return productRepository.findByShop(shopId.get(), pageable);
+            return ReplicaRoutingDataSource.onPrimary(() ->
+                    ETags.ofList("products", productRepository.findTablesChangeByShop(shopId.get())));
         }
+        return ReplicaRoutingDataSource.onPrimary(() ->
+                ETags.ofList("products", productRepository.findTablesChange()));
+    }
 
-        return productRepository.findByOrderByIdAsc(pageable);
+    @Transactional(readOnly = true)
+    public String getPriceHistogramETag(long shopId, int buckets) {
+        return ReplicaRoutingDataSource.onPrimary(() ->
+                ETags.ofList("price-histogram", productRepository.findTablesChangeByShop(shopId), buckets));
+    }
+
+    @Transactional(readOnly = true)
+    public Page<Product> getShopProductList(
+            Optional<Long> shopId,
+            Optional<Long> categoryId,
+            Optional<BigDecimal> minPrice,
+            Optional<BigDecimal> maxPrice,
+            Optional<String> sortBy,
+            Pageable pageable
+    ) {
+        return JsonGraphs.products(findShopProducts(shopId, categoryId, minPrice, maxPrice, sortBy, pageable));
+    }
+
+    // buckets of equal widths between the min and the max price of the shop, the empty ones included
+    @Transactional(readOnly = true)
+    public List<PriceBucket> getPriceHistogram(long shopId, int buckets) {
+        if (buckets < 1 || buckets > MAX_PRICE_BUCKETS) {
+            throw new IllegalArgumentException("Le nombre de tranches doit être entre 1 et " + MAX_PRICE_BUCKETS);
+        }
+        Object[] bounds = productRepository.findPriceBoundsByShop(shopId).get(0);
+        if (bounds[0] == null) {
+            return List.of();
+        }
+        long min = ((Number) bounds[0]).longValue();
+        long max = ((Number) bounds[1]).longValue();
+        long width = (max - min + buckets) / buckets;
+
+        long[] counts = new long[(int) ((max - min) / width) + 1];
+        for (Object[] bucket : productRepository.countByPriceBucket(shopId, min, max, width)) {
+            counts[((Number) bucket[0]).intValue()] = ((Number) bucket[1]).longValue();
+        }
+        List<PriceBucket> histogram = new ArrayList<PriceBucket>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            long from = min + i * width;
+            histogram.add(new PriceBucket(Prices.toDecimal(from), Prices.toDecimal(from + width - 1), counts[i]));
+        }
+        return histogram;
+    }
+
+    @Transactional(readOnly = true)
+    public KeysetSlice<Product> getShopProductWindow(
+            Optional<Long> shopId, Optional<Long> categoryId, Optional<String> after, int size
+    ) {
+        KeysetSlice<Product> slice = findShopProductWindow(shopId, categoryId, after, size);
+        JsonGraphs.products(slice.getContent());
+        return slice;
     }
 
     @Transactional
     public Product updateProduct(Product product) throws Exception {
         try {
-            getProduct(product.getId());
-            return this.createProduct(product);
+            Product existingProduct = getProduct(product.getId());
+            Long previousShopId = getShopId(existingProduct);
+            // the version is not sent by the clients
+            product.setVersion(existingProduct.getVersion());
+            Product updatedProduct = saveProduct(product, previousShopId);
+            productRepository.incrementVersion(updatedProduct.getId());
+            em.refresh(updatedProduct);
+            return JsonGraphs.product(updatedProduct);
         } catch (Exception e) {
             throw new Exception(e.getMessage());
         }
     }
 
-    private void checkLocalizedProducts(Product product) throws Exception {
+    void checkLocalizedProducts(Product product) throws Exception {
         Optional<LocalizedProduct> localizedProductFr = product.getLocalizedProducts()
                 .stream().filter(o -> o.getLocale().equals("FR")).findFirst();
 
@@ -89,6 +185,75 @@ public class ProductService {
         }
     }
 
+    private Page<Product> findShopProducts(
+            Optional<Long> shopId,
+            Optional<Long> categoryId,
+            Optional<BigDecimal> minPrice,
+            Optional<BigDecimal> maxPrice,
+            Optional<String> sortBy,
+            Pageable pageable
+    ) {
+        // PRICE: range filter and sort read in the order of the price indexes
+        if (minPrice.isPresent() || maxPrice.isPresent() || sortBy.isPresent()) {
+            long min = minPrice.map(Prices::toMinor).orElse(0L);
+            long max = maxPrice.map(Prices::toMinor).orElse(Long.MAX_VALUE);
+            Pageable sorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), priceSortOf(sortBy));
+            if (shopId.isPresent() && categoryId.isPresent()) {
+                return productRepository.findByShopAndCategoryAndPrice(
+                        shopId.get(), categoryId.get(), min, max, sorted);
+            }
+            if (shopId.isPresent()) {
+                return productRepository.findByShopAndPrice(shopId.get(), min, max, sorted);
+            }
+            return productRepository.findByPrice(min, max, sorted);
+        }
+
+        if (shopId.isPresent() && categoryId.isPresent()) {
+            return productRepository.findByShopAndCategory(shopId.get(), categoryId.get(), pageable);
+        }
+
+        if (shopId.isPresent()) {
+            return productRepository.findByShop(shopId.get(), pageable);
+        }
+
+        return productRepository.findByOrderByIdAsc(pageable);
+    }
+
+    private KeysetSlice<Product> findShopProductWindow(
+            Optional<Long> shopId, Optional<Long> categoryId, Optional<String> after, int size
+    ) {
+        Sort sort = Sort.by("id");
+        ScrollPosition position = KeysetCursor.position(after, sort);
+        Limit limit = KeysetCursor.limit(size);
+
+        if (shopId.isPresent() && categoryId.isPresent()) {
+            return KeysetSlice.of(productRepository.findByShopIdAndShopDeletedAtIsNullAndCategoriesId(
+                    shopId.get(), categoryId.get(), position, sort, limit));
+        }
+
+        if (shopId.isPresent()) {
+            return KeysetSlice.of(productRepository.findByShopIdAndShopDeletedAtIsNull(
+                    shopId.get(), position, sort, limit));
+        }
+
+        return KeysetSlice.of(productRepository.findAllBy(position, sort, limit));
+    }
+
+    // the id closes the sort so that the pages do not overlap between equal prices
+    private Sort priceSortOf(Optional<String> sortBy) {
+        switch (sortBy.orElse("id")) {
+            case "price":
+                return Sort.by("priceMinor", "id");
+            case "priceDesc":
+                return Sort.by(Sort.Direction.DESC, "priceMinor", "id");
+            case "id":
+                return Sort.by("id");
+            default:
+                throw new IllegalArgumentException(
+                        "Tri inconnu : " + sortBy.get() + ", tris possibles : [price, priceDesc, id]");
+        }
+    }
+
     private Product getProduct(Long id) throws Exception {
         Optional<Product> product = productRepository.findById(id);
         if (!product.isPresent()) {
@@ -97,4 +262,29 @@ public class ProductService {
         return product.get();
     }
 
+    private Long getShopId(Product product) {
+        return product.getShop() == null ? null : product.getShop().getId();
+    }
+
+    private Product saveProduct(Product product, Long previousShopId) throws Exception {
+        // Check that product exists at least in french and check name's length
+        try {
+            checkLocalizedProducts(product);
+        } catch (Exception e) {
+            throw new Exception(e.getMessage());
+        }
+
+        try {
+            Product newProduct = productRepository.save(product);
+            shopCounterService.onProductChanged(previousShopId, getShopId(newProduct));
+            em.refresh(newProduct);
+            if (newProduct.getShop() != null) {
+                em.refresh(newProduct.getShop());
+            }
+            indexingOutboxService.record(Product.class, newProduct.getId(), IndexingEventType.ADD_OR_UPDATE);
+            return newProduct;
+        } catch (Exception e) {
+            throw new Exception(e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,474 @@
+package fr.fullstack.shopapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import fr.fullstack.shopapp.config.ReplicaRoutingDataSource;
+import fr.fullstack.shopapp.dto.SearchIndexProgress;
+import fr.fullstack.shopapp.model.SearchIndexState;
+import fr.fullstack.shopapp.model.SearchIndexStatus;
+import fr.fullstack.shopapp.repository.SearchIndexStateRepository;
+import fr.fullstack.shopapp.util.IndexedEntities;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.hibernate.search.backend.elasticsearch.ElasticsearchBackend;
+import org.hibernate.search.backend.elasticsearch.ElasticsearchExtension;
+import org.hibernate.search.backend.elasticsearch.index.ElasticsearchIndexManager;
+import org.hibernate.search.backend.elasticsearch.metamodel.ElasticsearchIndexDescriptor;
+import org.hibernate.search.mapper.orm.Search;
+import org.hibernate.search.mapper.orm.mapping.SearchMapping;
+import org.hibernate.search.mapper.orm.work.SearchIndexingPlan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rebuilds the Elasticsearch indexes in the background without emptying the search:
+ * the documents are written into a new physical index, then the read alias is swapped
+ * atomically. The progress is checkpointed so an interrupted rebuild resumes where
+ * it stopped, and an index which is already up to date is not rebuilt at all. A rebuild
+ * which fails gives the writes back to the read index and starts over the next time.
+ *
+ * One instance at a time rebuilds: the rebuild holds a Postgres advisory lock on a
+ * connection of the primary pool until it ends, the lock is released by Postgres if
+ * the instance dies, and the next instance resumes from the checkpoint.
+ */
+@Service
+public class SearchIndexRebuildService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchIndexRebuildService.class);
+
+    private static final String LOCK_KEY = "search-index-rebuild";
+
+    private static final DateTimeFormatter INDEX_SUFFIX =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SearchIndexStateRepository stateRepository;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${shop.search.rebuild.batch-size:500}")
+    private int batchSize;
+
+    @Value("${shop.search.rebuild.delete-old-index:true}")
+    private boolean deleteOldIndex;
+
+    @Value("${shop.search.rebuild.on-start:auto}")
+    private String onStart;
+
+    @Value("${shop.search.rebuild.threads:2}")
+    private int threads;
+
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public SearchIndexProgress getProgress() {
+        return new SearchIndexProgress(running.get(), stateRepository.findAll());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+    }
+
+    /**
+     * Starts a rebuild in the background, returns false if one is already running,
+     * on this instance or on another one.
+     * Without force, only the indexes which are not up to date are rebuilt.
+     */
+    public boolean start(boolean force) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+
+        Connection lock = tryLock();
+        if (lock == null) {
+            running.set(false);
+            return false;
+        }
+        try {
+            coordinator.submit(() -> {
+                try {
+                    for (Class<?> entityType : IndexedEntities.TYPES.values()) {
+                        rebuild(entityType, force);
+                    }
+                } finally {
+                    unlock(lock);
+                    running.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            unlock(lock);
+            running.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    public void startOnBoot() {
+        switch (onStart) {
+            case "never":
+                LOGGER.info("Search index rebuild on start disabled");
+                break;
+            case "always":
+                start(true);
+                break;
+            default:
+                start(false);
+                break;
+        }
+    }
+
+    // the index is up to date when it was fully built by this version of the mapping and is still read
+    private boolean isUpToDate(RestClient client, ElasticsearchIndexDescriptor descriptor, SearchIndexState state)
+            throws IOException {
+        return state.getStatus() == SearchIndexStatus.READY
+                && Integer.valueOf(IndexedEntities.MAPPING_VERSION).equals(state.getBuildVersion())
+                && indicesOfAlias(client, descriptor.readName()).contains(state.getTargetIndex());
+    }
+
+    private long countEntities(Class<?> entityType) {
+        Long count = readOnPrimary(status -> em.createQuery(
+                "SELECT COUNT(e) FROM " + entityType.getSimpleName() + " e", Long.class).getSingleResult());
+        return count == null ? 0 : count;
+    }
+
+    // the schema expected by the current mapping, the live index may still have the one of a previous version
+    private void createIndex(SearchMapping mapping, RestClient client, Class<?> entityType, String targetIndex)
+            throws IOException {
+        List<String> definitions = new ArrayList<String>();
+        mapping.scope(entityType).schemaManager().exportExpectedSchema((backendName, indexName, export) ->
+                definitions.add(export.extension(ElasticsearchExtension.get()).bodyParts().get(0).toString()));
+
+        ObjectNode body = (ObjectNode) objectMapper.readTree(definitions.get(0));
+        // the aliases are moved by the rebuild itself
+        body.remove("aliases");
+        ObjectNode settings = body.has("settings") ? (ObjectNode) body.get("settings") : body.putObject("settings");
+        // no refresh while the documents are bulk loaded, it is restored before the swap
+        settings.put("refresh_interval", "-1");
+        perform(client, "PUT", "/" + targetIndex, body);
+    }
+
+    private ElasticsearchIndexDescriptor descriptor(SearchMapping mapping, Class<?> entityType) {
+        return mapping.indexedEntity(entityType).indexManager()
+                .unwrap(ElasticsearchIndexManager.class).descriptor();
+    }
+
+    private void indexChunk(Class<?> entityType, List<Long> ids) {
+        readOnPrimary(status -> {
+            List<?> entities = em.createQuery(
+                    "SELECT e FROM " + entityType.getSimpleName() + " e WHERE e.id IN :ids", entityType)
+                    .setParameter("ids", ids)
+                    .getResultList();
+
+            SearchIndexingPlan plan = Search.session(em).indexingPlan();
+            for (Object entity : entities) {
+                plan.addOrUpdate(entity);
+            }
+            plan.execute();
+            return null;
+        });
+    }
+
+    private boolean indexExists(RestClient client, String index) throws IOException {
+        Response response = client.performRequest(new Request("HEAD", "/" + index));
+        return response.getStatusLine().getStatusCode() == 200;
+    }
+
+    private void indexFromCheckpoint(Class<?> entityType, SearchIndexState state) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            while (true) {
+                long checkpoint = state.getCheckpointId();
+                List<Long> ids = readOnPrimary(status -> em.createQuery(
+                        "SELECT e.id FROM " + entityType.getSimpleName() + " e WHERE e.id > :checkpoint "
+                                + "ORDER BY e.id", Long.class)
+                        .setParameter("checkpoint", checkpoint)
+                        .setMaxResults(batchSize * threads)
+                        .getResultList());
+                if (ids == null || ids.isEmpty()) {
+                    return;
+                }
+
+                // one chunk per worker, the checkpoint only moves once all of them are indexed
+                List<Future<?>> chunks = new ArrayList<Future<?>>();
+                for (int i = 0; i < ids.size(); i += batchSize) {
+                    List<Long> chunk = ids.subList(i, Math.min(i + batchSize, ids.size()));
+                    chunks.add(workers.submit(() -> indexChunk(entityType, chunk)));
+                }
+                for (Future<?> chunk : chunks) {
+                    chunk.get();
+                }
+
+                state.setCheckpointId(ids.get(ids.size() - 1));
+                state.setIndexedCount(state.getIndexedCount() + ids.size());
+                stateRepository.save(state);
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private List<String> indicesOfAlias(RestClient client, String alias) throws IOException {
+        List<String> indices = new ArrayList<String>();
+        try {
+            Iterator<String> names = perform(client, "GET", "/_alias/" + alias, null).fieldNames();
+            names.forEachRemaining(indices::add);
+        } catch (ResponseException e) {
+            if (e.getResponse().getStatusLine().getStatusCode() != 404) {
+                throw e;
+            }
+        }
+        return indices;
+    }
+
+    private JsonNode perform(RestClient client, String method, String endpoint, JsonNode body) throws IOException {
+        Request request = new Request(method, endpoint);
+        if (body != null) {
+            request.setJsonEntity(objectMapper.writeValueAsString(body));
+        }
+        Response response = client.performRequest(request);
+        return objectMapper.readTree(response.getEntity().getContent());
+    }
+
+    // session lock, held by the connection until it is unlocked or closed
+    private Connection tryLock() {
+        Connection connection = null;
+        try {
+            connection = primaryDataSource.getConnection();
+            connection.setAutoCommit(true);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT pg_try_advisory_lock(hashtext(?))")) {
+                statement.setString(1, LOCK_KEY);
+                try (ResultSet result = statement.executeQuery()) {
+                    if (result.next() && result.getBoolean(1)) {
+                        return connection;
+                    }
+                }
+            }
+            LOGGER.info("Search index rebuild already running on another instance");
+            connection.close();
+            return null;
+        } catch (SQLException e) {
+            LOGGER.error("Cannot take the search index rebuild lock", e);
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException ignored) {
+                    // the lock was not taken
+                }
+            }
+            return null;
+        }
+    }
+
+    private void unlock(Connection connection) {
+        try (connection; PreparedStatement statement = connection.prepareStatement(
+                "SELECT pg_advisory_unlock(hashtext(?))")) {
+            statement.setString(1, LOCK_KEY);
+            statement.execute();
+        } catch (SQLException e) {
+            // closing the connection evicts it from the pool, which releases the lock
+            LOGGER.warn("Cannot release the search index rebuild lock", e);
+        }
+    }
+
+    // the replica may lag, the documents are read from the primary
+    private <T> T readOnPrimary(TransactionCallback<T> action) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return ReplicaRoutingDataSource.onPrimary(() -> transaction.execute(action));
+    }
+
+    private void rebuild(Class<?> entityType, boolean force) {
+        String entityName = entityType.getSimpleName();
+        SearchIndexState state = stateRepository.findById(entityName).orElseGet(() -> {
+            SearchIndexState newState = new SearchIndexState();
+            newState.setEntityName(entityName);
+            return newState;
+        });
+
+        try {
+            SearchMapping mapping = Search.mapping(entityManagerFactory);
+            RestClient client = mapping.backend().unwrap(ElasticsearchBackend.class).client(RestClient.class);
+            ElasticsearchIndexDescriptor descriptor = descriptor(mapping, entityType);
+
+            // a build of a previous mapping version is not resumed, its documents have the old mapping;
+            // neither is a failed one, the writes of the outbox went to the read index since it failed
+            boolean resumable = state.getStatus() == SearchIndexStatus.BUILDING
+                    && Integer.valueOf(IndexedEntities.MAPPING_VERSION).equals(state.getBuildVersion())
+                    && state.getTargetIndex() != null && indexExists(client, state.getTargetIndex());
+            if (!resumable) {
+                if (!force && isUpToDate(client, descriptor, state)) {
+                    LOGGER.info("Search index of {} is up to date ({}), no rebuild",
+                            entityName, state.getTargetIndex());
+                    return;
+                }
+                startBuild(mapping, client, entityType, descriptor, state, countEntities(entityType));
+            }
+
+            LOGGER.info("Search index of {}: indexing into {} from id {}",
+                    entityName, state.getTargetIndex(), state.getCheckpointId());
+            try {
+                indexFromCheckpoint(entityType, state);
+                swapReadAlias(client, descriptor, state);
+            } catch (Exception e) {
+                // otherwise the outbox would go on writing into an index which is never read
+                try {
+                    restoreWriteAlias(client, descriptor, state.getTargetIndex());
+                } catch (IOException restoreError) {
+                    e.addSuppressed(restoreError);
+                }
+                throw e;
+            }
+        } catch (Exception e) {
+            LOGGER.error("Search index rebuild of {} failed", entityName, e);
+            String error = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+            state.setStatus(SearchIndexStatus.FAILED);
+            state.setLastError(error.substring(0, Math.min(error.length(), 1000)));
+            stateRepository.save(state);
+        }
+    }
+
+    // the write alias goes back to the read index, the failed build is dropped
+    private void restoreWriteAlias(
+            RestClient client, ElasticsearchIndexDescriptor descriptor, String targetIndex
+    ) throws IOException {
+        List<String> readIndices = indicesOfAlias(client, descriptor.readName());
+        if (readIndices.isEmpty() || readIndices.contains(targetIndex)) {
+            // the read alias was already swapped, the writes go to the index which is read
+            return;
+        }
+
+        ArrayNode actions = objectMapper.createArrayNode();
+        for (String index : indicesOfAlias(client, descriptor.writeName())) {
+            actions.addObject().putObject("remove").put("index", index).put("alias", descriptor.writeName());
+        }
+        actions.addObject().putObject("add").put("index", readIndices.get(0))
+                .put("alias", descriptor.writeName()).put("is_write_index", true);
+        ObjectNode body = objectMapper.createObjectNode();
+        body.set("actions", actions);
+        perform(client, "POST", "/_aliases", body);
+
+        if (indexExists(client, targetIndex)) {
+            perform(client, "DELETE", "/" + targetIndex, null);
+        }
+    }
+
+    private void startBuild(
+            SearchMapping mapping, RestClient client, Class<?> entityType,
+            ElasticsearchIndexDescriptor descriptor, SearchIndexState state, long entityCount
+    ) throws IOException {
+        String targetIndex = descriptor.hibernateSearchName().toLowerCase() + "-" + INDEX_SUFFIX.format(Instant.now());
+        List<String> readIndices = indicesOfAlias(client, descriptor.readName());
+        if (readIndices.isEmpty()) {
+            throw new IllegalStateException("No index behind the alias " + descriptor.readName());
+        }
+        createIndex(mapping, client, entityType, targetIndex);
+
+        // the writes of the outbox go to the new index from now on, the reads stay on the old one
+        ArrayNode actions = objectMapper.createArrayNode();
+        for (String index : indicesOfAlias(client, descriptor.writeName())) {
+            actions.addObject().putObject("remove").put("index", index).put("alias", descriptor.writeName());
+        }
+        actions.addObject().putObject("add").put("index", targetIndex)
+                .put("alias", descriptor.writeName()).put("is_write_index", true);
+        ObjectNode body = objectMapper.createObjectNode();
+        body.set("actions", actions);
+        perform(client, "POST", "/_aliases", body);
+
+        state.setStatus(SearchIndexStatus.BUILDING);
+        state.setBuildVersion(IndexedEntities.MAPPING_VERSION);
+        state.setTargetIndex(targetIndex);
+        state.setCheckpointId(0);
+        state.setIndexedCount(0);
+        state.setTotalCount(entityCount);
+        state.setStartedAt(Instant.now());
+        state.setCompletedAt(null);
+        state.setLastError(null);
+        stateRepository.save(state);
+    }
+
+    private void swapReadAlias(
+            RestClient client, ElasticsearchIndexDescriptor descriptor, SearchIndexState state
+    ) throws IOException {
+        String targetIndex = state.getTargetIndex();
+
+        ObjectNode settings = objectMapper.createObjectNode();
+        settings.putObject("index").putNull("refresh_interval");
+        perform(client, "PUT", "/" + targetIndex + "/_settings", settings);
+        perform(client, "POST", "/" + targetIndex + "/_refresh", null);
+
+        List<String> previousIndices = indicesOfAlias(client, descriptor.readName());
+        ArrayNode actions = objectMapper.createArrayNode();
+        for (String index : previousIndices) {
+            if (!index.equals(targetIndex)) {
+                actions.addObject().putObject("remove").put("index", index).put("alias", descriptor.readName());
+            }
+        }
+        actions.addObject().putObject("add").put("index", targetIndex).put("alias", descriptor.readName());
+        ObjectNode body = objectMapper.createObjectNode();
+        body.set("actions", actions);
+        // both actions are applied atomically, the search never sees an empty index
+        perform(client, "POST", "/_aliases", body);
+
+        if (deleteOldIndex) {
+            for (String index : previousIndices) {
+                if (!index.equals(targetIndex)) {
+                    perform(client, "DELETE", "/" + index, null);
+                }
+            }
+        }
+
+        state.setStatus(SearchIndexStatus.READY);
+        state.setCompletedAt(Instant.now());
+        stateRepository.save(state);
+        LOGGER.info("Search index of {} rebuilt: {} documents in {}",
+                state.getEntityName(), state.getIndexedCount(), targetIndex);
+    }
+}
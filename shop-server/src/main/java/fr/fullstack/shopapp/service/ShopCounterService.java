@@ -0,0 +1,134 @@
+package fr.fullstack.shopapp.service;
+
+import fr.fullstack.shopapp.model.IndexingEventType;
+import fr.fullstack.shopapp.model.Shop;
+import fr.fullstack.shopapp.repository.ShopRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Maintains the denormalized nb_products / nb_categories columns of the shops.
+ * Products writes update the counters in the same transaction, the reconciliation
+ * job recounts them in small id ranges and only rewrites (and reindexes) the shops
+ * whose counters drifted, the others keep their version (ETag).
+ */
+@Service
+public class ShopCounterService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShopCounterService.class);
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private IndexingOutboxService indexingOutboxService;
+
+    @Value("${shop.counters.reconcile-batch-size:1000}")
+    private int reconcileBatchSize;
+
+    @Transactional
+    public void onCategoryDetached(Collection<Long> shopIds) {
+        if (shopIds.isEmpty()) {
+            return;
+        }
+        em.flush();
+        shopRepository.refreshNbCategories(shopIds);
+    }
+
+    @Transactional
+    public void onProductChanged(Long previousShopId, Long currentShopId) {
+        // the bulk updates below read the products tables, pending changes must be written first
+        em.flush();
+
+        List<Long> shopIds = new ArrayList<Long>();
+        if (!Objects.equals(previousShopId, currentShopId)) {
+            if (previousShopId != null) {
+                shopRepository.incrementNbProducts(previousShopId, -1);
+            }
+            if (currentShopId != null) {
+                shopRepository.incrementNbProducts(currentShopId, 1);
+            }
+        }
+        if (previousShopId != null) {
+            shopIds.add(previousShopId);
+        }
+        if (currentShopId != null && !currentShopId.equals(previousShopId)) {
+            shopIds.add(currentShopId);
+        }
+        if (!shopIds.isEmpty()) {
+            shopRepository.refreshNbCategories(shopIds);
+        }
+        // the product count is stored in the shops index
+        if (!Objects.equals(previousShopId, currentShopId)) {
+            for (Long shopId : shopIds) {
+                indexingOutboxService.record(Shop.class, shopId, IndexingEventType.ADD_OR_UPDATE);
+            }
+        }
+    }
+
+    /**
+     * Same as onProductChanged for a batch of products: deltaByShop gives the number
+     * of products added (or removed, when negative) to each shop.
+     */
+    @Transactional
+    public void onProductsChanged(Map<Long, Long> deltaByShop) {
+        if (deltaByShop.isEmpty()) {
+            return;
+        }
+        em.flush();
+
+        deltaByShop.forEach((shopId, delta) -> {
+            if (delta != 0) {
+                shopRepository.incrementNbProducts(shopId, delta);
+            }
+        });
+        shopRepository.refreshNbCategories(deltaByShop.keySet());
+        indexingOutboxService.recordAll(Shop.class, deltaByShop.keySet(), IndexingEventType.ADD_OR_UPDATE);
+    }
+
+    @Scheduled(cron = "${shop.counters.reconcile-cron:0 0 3 * * *}")
+    public void reconcileAll() {
+        Long maxId = shopRepository.findMaxId();
+        if (maxId == null) {
+            return;
+        }
+
+        // one short transaction per id range, so the job never locks the whole shops table
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        long updated = 0;
+        for (long fromId = 0; fromId < maxId; fromId += reconcileBatchSize) {
+            long from = fromId;
+            Integer count = transaction.execute(status -> {
+                List<Long> shopIds = shopRepository.findDriftedCounterIds(from, from + reconcileBatchSize);
+                if (shopIds.isEmpty()) {
+                    return 0;
+                }
+                // the counters are stored in the shops index
+                indexingOutboxService.recordAll(Shop.class, shopIds, IndexingEventType.ADD_OR_UPDATE);
+                return shopRepository.reconcileCounters(shopIds);
+            });
+            updated += count == null ? 0 : count;
+        }
+        LOGGER.info("Shop counters reconciled, {} shops had drifted", updated);
+    }
+}
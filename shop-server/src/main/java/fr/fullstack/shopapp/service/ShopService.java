@@ -1,21 +1,41 @@
 package fr.fullstack.shopapp.service;
 
-import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.config.ReplicaRoutingDataSource;
+import fr.fullstack.shopapp.dto.KeysetSlice;
+import fr.fullstack.shopapp.dto.ShopSchedule;
+import fr.fullstack.shopapp.model.IndexingEventType;
+import fr.fullstack.shopapp.repository.ProductRepository;
 import fr.fullstack.shopapp.model.Shop;
 import fr.fullstack.shopapp.repository.ShopRepository;
+import fr.fullstack.shopapp.util.ETags;
+import fr.fullstack.shopapp.util.JsonGraphs;
+import fr.fullstack.shopapp.util.KeysetCursor;
+import fr.fullstack.shopapp.util.WeekMinutes;
+import io.micrometer.core.annotation.Timed;
+import org.hibernate.jpa.SpecHints;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Optional;
 
 @Service
+@Timed("shopapp.service")
 public class ShopService {
     @PersistenceContext
     private EntityManager em;
@@ -23,22 +43,38 @@ public class ShopService {
     @Autowired
     private ShopRepository shopRepository;
 
+    @Autowired
+    private ProductRepository productRepository;
+
     @Autowired
     private OpeningHoursService openingHoursService;
 
+    @Autowired
+    private IndexingOutboxService indexingOutboxService;
+
+    // time zone of the opening hours of the shops
+    @Value("${shop.opening-hours.zone:Europe/Paris}")
+    private ZoneId openingHoursZone;
+
+    // deleted shops are only marked, their products are detached later by DeletionPurgeService
+    @Value("${shop.deletes.tombstones:false}")
+    private boolean tombstones;
+
     @Transactional
     public Shop createShop(Shop shop) throws Exception {
         // verification des chevauchements des heures sur la meme journée
-        if (openingHoursService.hasOverlappingHours(shop.getOpeningHours())) {
-            throw new Exception("Les horaires de la boutique se chevauchent");
+        List<String> overlaps = openingHoursService.findOverlappingHours(shop.getOpeningHours());
+        if (!overlaps.isEmpty()) {
+            throw new Exception("Les horaires de la boutique se chevauchent : " + String.join(", ", overlaps));
         }
 
         try {
             Shop newShop = shopRepository.save(shop);
-            // Refresh the entity after the save. Otherwise, @Formula does not work.
+            // Refresh the entity after the save to load the counters maintained by the database.
             em.flush();
             em.refresh(newShop);
-            return newShop;
+            indexingOutboxService.record(Shop.class, newShop.getId(), IndexingEventType.ADD_OR_UPDATE);
+            return JsonGraphs.shop(newShop);
         } catch (Exception e) {
             throw new Exception("Erreur lors de la création de la boutique: " + e.getMessage());
         }
@@ -47,80 +83,171 @@ public class ShopService {
     @Transactional
     public void deleteShopById(long id) throws Exception {
         try {
-            Shop shop = getShop(id);
-            // delete nested relations with products
-            deleteNestedRelations(shop);
-            shopRepository.deleteById(id);
+            getShop(id);
+            // the products documents embed the shop, they are indexed without it
+            indexingOutboxService.recordProductsOfShop(id);
+            if (tombstones) {
+                shopRepository.markDeleted(id);
+            } else {
+                // the products are kept without shop, in one statement
+                productRepository.detachAllFromShop(id);
+                shopRepository.deleteById(id);
+            }
+            indexingOutboxService.record(Shop.class, id, IndexingEventType.DELETE);
         } catch (Exception e) {
             throw new Exception(e.getMessage());
         }
     }
 
+    @Transactional(readOnly = true)
     public Shop getShopById(long id) throws Exception {
         try {
-            return getShop(id);
+            return JsonGraphs.shop(getShop(id));
         } catch (Exception e) {
             throw new Exception(e.getMessage());
         }
     }
 
+    // the shop read again from the primary, without the second-level cache which it refreshes: the
+    // cache of this instance, or the replica, may still give the shop before a write made through
+    // another instance (see HttpCachePolicies)
+    @Transactional(readOnly = true)
+    public Shop reloadShopById(long id) throws Exception {
+        // CacheMode.REFRESH, as the properties of the session: find reads them, not its cache mode
+        em.setProperty(SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS);
+        em.setProperty(SpecHints.HINT_SPEC_CACHE_STORE_MODE, CacheStoreMode.REFRESH);
+        // the first statement takes the connection of the transaction
+        ReplicaRoutingDataSource.onPrimary(() -> shopRepository.findById(id));
+        return getShopById(id);
+    }
+
+    // the versions are read from the primary, a lagging replica would answer 304 for a changed shop
+    @Transactional(readOnly = true)
+    public Optional<String> getShopETag(long id) {
+        return ReplicaRoutingDataSource.onPrimary(() -> ETags.of("shop", id, shopRepository.findVersionById(id)));
+    }
+
+    @Transactional(readOnly = true)
     public Page<Shop> getShopList(
             Optional<String> sortBy,
             Optional<Boolean> inVacations,
-            Optional<String> createdBefore,
             Optional<String> createdAfter,
+            Optional<String> createdBefore,
+            Optional<String> openAt,
             Pageable pageable
     ) {
-        // SORT
-        if (sortBy.isPresent()) {
-            switch (sortBy.get()) {
-                case "name":
-                    return shopRepository.findByOrderByNameAsc(pageable);
-                case "createdAt":
-                    return shopRepository.findByOrderByCreatedAtAsc(pageable);
-                default:
-                    return shopRepository.findByOrderByNbProductsAsc(pageable);
-            }
+        return JsonGraphs.shops(findShops(sortBy, inVacations, createdAfter, createdBefore, openAt, pageable));
+    }
+
+    // openAt=now moves with the time: the minute of the filter is part of the ETag
+    @Transactional(readOnly = true)
+    public String getShopListETag(Optional<String> openAt) {
+        if (openAt.isPresent()) {
+            return ReplicaRoutingDataSource.onPrimary(() -> ETags.ofList("shops", shopRepository.findTableChange(),
+                    WeekMinutes.parse(openAt.get(), openingHoursZone)));
         }
+        return ReplicaRoutingDataSource.onPrimary(() -> ETags.ofList("shops", shopRepository.findTableChange()));
+    }
 
-        // FILTERS
-        Page<Shop> shopList = getShopListWithFilter(inVacations, createdBefore, createdAfter, pageable);
-        if (shopList != null) {
-            return shopList;
+    @Transactional(readOnly = true)
+    public ShopSchedule getShopSchedule(long id, Optional<String> at) throws Exception {
+        try {
+            LocalDateTime dateTime = WeekMinutes.parseDateTime(at.orElse("now"), openingHoursZone);
+            return openingHoursService.getSchedule(getShop(id), dateTime);
+        } catch (Exception e) {
+            throw new Exception(e.getMessage());
         }
+    }
 
-        // NONE
-        return shopRepository.findByOrderByIdAsc(pageable);
+    @Transactional(readOnly = true)
+    public KeysetSlice<Shop> getShopWindow(
+            Optional<String> sortBy,
+            Optional<Boolean> inVacations,
+            Optional<String> after,
+            int size
+    ) {
+        Sort sort = sortOf(sortBy);
+        ScrollPosition position = KeysetCursor.position(after, sort);
+        Limit limit = KeysetCursor.limit(size);
+        KeysetSlice<Shop> slice = inVacations.isPresent()
+                ? KeysetSlice.of(shopRepository.findByInVacations(inVacations.get(), position, sort, limit))
+                : KeysetSlice.of(shopRepository.findAllBy(position, sort, limit));
+        JsonGraphs.shops(slice.getContent());
+        return slice;
     }
 
     @Transactional
     public Shop updateShop(Shop shop) throws Exception {
         try {
-            getShop(shop.getId());
-            return this.createShop(shop);
+            Shop existingShop = getShop(shop.getId());
+            // the products index embeds the name and the vacation status of their shop
+            boolean embeddedFieldsChanged = !existingShop.getName().equals(shop.getName())
+                    || existingShop.getInVacations() != shop.getInVacations();
+            // the version is not sent by the clients
+            shop.setVersion(existingShop.getVersion());
+            Shop updatedShop = this.createShop(shop);
+            shopRepository.incrementVersion(updatedShop.getId());
+            em.refresh(updatedShop);
+            if (embeddedFieldsChanged) {
+                indexingOutboxService.recordProductsOfShop(updatedShop.getId());
+            }
+            return JsonGraphs.shop(updatedShop);
         } catch (Exception e) {
             throw new Exception(e.getMessage());
         }
     }
 
-    private void deleteNestedRelations(Shop shop) {
-        List<Product> products = shop.getProducts();
-        for (int i = 0; i < products.size(); i++) {
-            Product product = products.get(i);
-            product.setShop(null);
-            em.merge(product);
-            em.flush();
-        }
-    }
-
     private Shop getShop(Long id) throws Exception {
         Optional<Shop> shop = shopRepository.findById(id);
-        if (!shop.isPresent()) {
+        if (!shop.isPresent() || shop.get().getDeletedAt() != null) {
             throw new Exception("Boutique avec id " + id + " non trouvé");
         }
         return shop.get();
     }
 
+    private Page<Shop> findShops(
+            Optional<String> sortBy,
+            Optional<Boolean> inVacations,
+            Optional<String> createdAfter,
+            Optional<String> createdBefore,
+            Optional<String> openAt,
+            Pageable pageable
+    ) {
+        // OPENING HOURS: the only list combining the sort and the filters
+        if (openAt.isPresent()) {
+            int minute = WeekMinutes.parse(openAt.get(), openingHoursZone);
+            return shopRepository.findOpenAt(
+                    minute,
+                    minute + WeekMinutes.MINUTES_PER_WEEK,
+                    inVacations.orElse(null),
+                    createdAfter.map(LocalDate::parse).orElse(null),
+                    createdBefore.map(LocalDate::parse).orElse(null),
+                    PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sortOf(sortBy))
+            );
+        }
+
+        // SORT
+        if (sortBy.isPresent()) {
+            switch (sortBy.get()) {
+                case "name":
+                    return shopRepository.findByOrderByNameAsc(pageable);
+                case "createdAt":
+                    return shopRepository.findByOrderByCreatedAtAsc(pageable);
+                default:
+                    return shopRepository.findByOrderByNbProductsDescIdAsc(pageable);
+            }
+        }
+
+        // FILTERS
+        Page<Shop> shopList = getShopListWithFilter(inVacations, createdAfter, createdBefore, pageable);
+        if (shopList != null) {
+            return shopList;
+        }
+
+        // NONE
+        return shopRepository.findByOrderByIdAsc(pageable);
+    }
+
     private Page<Shop> getShopListWithFilter(
             Optional<Boolean> inVacations,
             Optional<String> createdAfter,
@@ -172,4 +299,20 @@ public class ShopService {
 
         return null;
     }
+
+    // the id always closes the sort so that the order (and the keyset) is unique
+    private Sort sortOf(Optional<String> sortBy) {
+        Sort sort = Sort.by("id");
+        if (sortBy.isPresent()) {
+            switch (sortBy.get()) {
+                case "name":
+                    return Sort.by("name").and(sort);
+                case "createdAt":
+                    return Sort.by("createdAt").and(sort);
+                default:
+                    return Sort.by(Sort.Direction.DESC, "nbProducts").and(sort);
+            }
+        }
+        return sort;
+    }
 }
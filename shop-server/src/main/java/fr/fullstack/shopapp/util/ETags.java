@@ -0,0 +1,64 @@
+package fr.fullstack.shopapp.util;
+
+import fr.fullstack.shopapp.model.Category;
+import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.model.Shop;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * ETags of the catalog reads. An entity has a strong ETag, from its @Version column
+ * (timestamp, in microseconds): its JSON only depends on its version. A list has a weak one,
+ * from the change counters of its tables (table-changes.sql), which follow the order of the
+ * commits: it changes on every write which may change the page, and sometimes on writes
+ * which do not.
+ *
+ * The response to a GET of an entity carries the ETag of the entity loaded (of(Shop), ...),
+ * from the same versions as findVersionById: the second-level cache of the instance or the
+ * replica may give an older entity than the version read on the primary.
+ */
+public final class ETags {
+    private ETags() {
+    }
+
+    // empty when the entity does not exist
+    public static Optional<String> of(String type, long id, Optional<Instant> version) {
+        return version.map(v -> "\"" + type + "-" + id + "-" + micros(v) + "\"");
+    }
+
+    public static String of(Shop shop) {
+        return of("shop", shop.getId(), Optional.of(shop.getVersion())).get();
+    }
+
+    // the JSON of a product contains its shop and its categories
+    public static String of(Product product) {
+        Instant version = product.getVersion();
+        if (product.getShop() != null && product.getShop().getVersion().isAfter(version)) {
+            version = product.getShop().getVersion();
+        }
+        for (Category category : product.getCategories()) {
+            if (category.getVersion().isAfter(version)) {
+                version = category.getVersion();
+            }
+        }
+        return of("product", product.getId(), Optional.of(version)).get();
+    }
+
+    public static String of(Category category) {
+        return of("category", category.getId(), Optional.of(category.getVersion())).get();
+    }
+
+    // the keys are the parameters of the list which are not in the url (e.g. the current time)
+    public static String ofList(String type, long change, Object... keys) {
+        StringBuilder etag = new StringBuilder("W/\"").append(type).append('-').append(change);
+        for (Object key : keys) {
+            etag.append('-').append(key);
+        }
+        return etag.append('"').toString();
+    }
+
+    private static long micros(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000;
+    }
+}
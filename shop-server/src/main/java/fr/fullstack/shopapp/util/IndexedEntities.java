@@ -0,0 +1,17 @@
+package fr.fullstack.shopapp.util;
+
+import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.model.Shop;
+
+import java.util.Map;
+
+public class IndexedEntities {
+    // to increment when the mapping of an indexed entity changes, the indexes are then rebuilt on start
+    public static final int MAPPING_VERSION = 1;
+
+    // entities indexed in Elasticsearch, by entity name
+    public static final Map<String, Class<?>> TYPES = Map.of(
+            Shop.class.getSimpleName(), Shop.class,
+            Product.class.getSimpleName(), Product.class
+    );
+}
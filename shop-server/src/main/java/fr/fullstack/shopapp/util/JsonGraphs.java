@@ -0,0 +1,45 @@
+package fr.fullstack.shopapp.util;
+
+import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.model.Shop;
+import org.hibernate.Hibernate;
+
+/**
+ * Loads the lazy collections written in the JSON of the entities, in the transaction of
+ * the service: the session is closed before the response is serialized
+ * (spring.jpa.open-in-view=false). The collections are loaded in the order of the
+ * serialization, by batches of hibernate.default_batch_fetch_size, so a page runs the
+ * same statements as when they were loaded by Jackson.
+ */
+public final class JsonGraphs {
+    private JsonGraphs() {
+    }
+
+    public static Product product(Product product) {
+        Hibernate.initialize(product.getCategories());
+        Hibernate.initialize(product.getLocalizedProducts());
+        if (product.getShop() != null) {
+            shop(product.getShop());
+        }
+        return product;
+    }
+
+    public static <T extends Iterable<Product>> T products(T products) {
+        for (Product product : products) {
+            product(product);
+        }
+        return products;
+    }
+
+    public static Shop shop(Shop shop) {
+        Hibernate.initialize(shop.getOpeningHours());
+        return shop;
+    }
+
+    public static <T extends Iterable<Shop>> T shops(T shops) {
+        for (Shop shop : shops) {
+            shop(shop);
+        }
+        return shops;
+    }
+}
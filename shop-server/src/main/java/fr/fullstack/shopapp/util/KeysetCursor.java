@@ -0,0 +1,113 @@
+package fr.fullstack.shopapp.util;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Opaque cursor of the keyset pagination: the sort keys and the id of the last
+ * element of a page, with their type, encoded in url safe base64.
+ */
+public class KeysetCursor {
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final String INVALID_CURSOR = "Curseur de pagination invalide";
+    private static final int MAX_SIZE = 200;
+
+    public static String encode(KeysetScrollPosition position) {
+        StringBuilder token = new StringBuilder();
+        for (Map.Entry<String, Object> key : position.getKeys().entrySet()) {
+            if (token.length() > 0) {
+                token.append(',');
+            }
+            token.append(key.getKey()).append('=').append(encodeValue(key.getValue()));
+        }
+        return ENCODER.encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Limit limit(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("La taille de page doit être positive");
+        }
+        return Limit.of(Math.min(size, MAX_SIZE));
+    }
+
+    public static ScrollPosition position(Optional<String> after, Sort sort) {
+        if (after.isEmpty() || after.get().isEmpty()) {
+            return ScrollPosition.keyset();
+        }
+
+        Map<String, Object> keys = decode(after.get());
+        Set<String> sortKeys = new HashSet<String>();
+        sort.forEach(order -> sortKeys.add(order.getProperty()));
+        // a cursor is only valid for the sort which produced it
+        if (!sortKeys.equals(keys.keySet())) {
+            throw new IllegalArgumentException(INVALID_CURSOR);
+        }
+        return ScrollPosition.forward(keys);
+    }
+
+    private static Map<String, Object> decode(String cursor) {
+        try {
+            String token = new String(DECODER.decode(cursor), StandardCharsets.UTF_8);
+            Map<String, Object> keys = new LinkedHashMap<String, Object>();
+            for (String entry : token.split(",")) {
+                int separator = entry.indexOf('=');
+                keys.put(entry.substring(0, separator), decodeValue(entry.substring(separator + 1)));
+            }
+            return keys;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException(INVALID_CURSOR);
+        }
+    }
+
+    private static Object decodeValue(String value) {
+        String raw = new String(DECODER.decode(value.substring(2)), StandardCharsets.UTF_8);
+        switch (value.charAt(0)) {
+            case 'L':
+                return Long.valueOf(raw);
+            case 'I':
+                return Integer.valueOf(raw);
+            case 'F':
+                return Float.valueOf(raw);
+            case 'B':
+                return Boolean.valueOf(raw);
+            case 'D':
+                return LocalDate.parse(raw);
+            case 'S':
+                return raw;
+            default:
+                throw new IllegalArgumentException(INVALID_CURSOR);
+        }
+    }
+
+    private static String encodeValue(Object value) {
+        char type;
+        if (value instanceof Long) {
+            type = 'L';
+        } else if (value instanceof Integer) {
+            type = 'I';
+        } else if (value instanceof Float) {
+            type = 'F';
+        } else if (value instanceof Boolean) {
+            type = 'B';
+        } else if (value instanceof LocalDate) {
+            type = 'D';
+        } else if (value instanceof String) {
+            type = 'S';
+        } else {
+            throw new IllegalArgumentException("Type de clé non supporté : " + value);
+        }
+        return type + ":" + ENCODER.encodeToString(value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,74 @@
+package fr.fullstack.shopapp.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Small in-process cache: keeps at most maxSize entries, evicts the least recently
+ * used one first, and drops the entries older than the ttl.
+ * A ReentrantLock rather than synchronized: a virtual thread waiting for it does not pin its carrier thread.
+ */
+public class LruCache<K, V> {
+    private final Map<K, Entry<V>> entries;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final long ttlMillis;
+
+    public LruCache(int maxSize, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the cached value of the key, or computes and caches it.
+     * The value is computed outside the lock, so a slow computation does not block the other keys.
+     */
+    public V get(K key, Function<K, V> loader) {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                return entry.value;
+            }
+        } finally {
+            lock.unlock();
+        }
+        V value = loader.apply(key);
+        lock.lock();
+        try {
+            entries.put(key, new Entry<>(value, now + ttlMillis));
+        } finally {
+            lock.unlock();
+        }
+        return value;
+    }
+
+    private static class Entry<V> {
+        private final long expiresAt;
+
+        private final V value;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package fr.fullstack.shopapp.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Prices are stored in minor units (cents) as integers: exact sums and comparisons,
+ * and a price range or sort is a range scan of a bigint index. The API keeps the
+ * decimal prices, rounded to the cent.
+ */
+public class Prices {
+    public static final int SCALE = 2;
+
+    public static long toMinor(BigDecimal price) {
+        if (price == null) {
+            throw new IllegalArgumentException("Le prix peut ne pas être nul");
+        }
+        try {
+            return price.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Prix invalide : " + price.toPlainString());
+        }
+    }
+
+    public static BigDecimal toDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+}
@@ -0,0 +1,59 @@
+package fr.fullstack.shopapp.util;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Minute of the week, from 0 (monday 00:00) to 10079 (sunday 23:59): the opening
+ * hours of a shop are stored as intervals of minutes of the week, so that "open at"
+ * is a range query on two integers.
+ */
+public class WeekMinutes {
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    private static final String INVALID_DATE = "La date doit être 'now' ou au format yyyy-MM-ddTHH:mm";
+
+    // day from 1 (monday) to 7 (sunday), as OpeningHoursShop.day
+    public static int of(int day, LocalTime time) {
+        return (day - 1) * MINUTES_PER_DAY + time.getHour() * 60 + time.getMinute();
+    }
+
+    public static int of(LocalDateTime dateTime) {
+        return of(dateTime.getDayOfWeek().getValue(), dateTime.toLocalTime());
+    }
+
+    // end of an opening interval: a closing before (or at) the opening is on the next day
+    public static int closing(int day, LocalTime openAt, LocalTime closeAt) {
+        int open = of(day, openAt);
+        int close = of(day, closeAt);
+        return close > open ? close : close + MINUTES_PER_DAY;
+    }
+
+    public static int parse(String value, ZoneId zone) {
+        return of(parseDateTime(value, zone));
+    }
+
+    // "now" or a local date and time of the shops (yyyy-MM-ddTHH:mm)
+    public static LocalDateTime parseDateTime(String value, ZoneId zone) {
+        if (value.equalsIgnoreCase("now")) {
+            return LocalDateTime.now(zone).withSecond(0).withNano(0);
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(INVALID_DATE);
+        }
+    }
+
+    public static LocalTime toTime(int minute) {
+        int minuteOfDay = Math.floorMod(minute, MINUTES_PER_DAY);
+        return LocalTime.of(minuteOfDay / 60, minuteOfDay % 60);
+    }
+
+    // day from 1 (monday) to 7 (sunday), the minutes past the end of the week are on the next monday
+    public static int toDay(int minute) {
+        return Math.floorMod(minute, MINUTES_PER_WEEK) / MINUTES_PER_DAY + 1;
+    }
+}
@@ -0,0 +1,195 @@
+package fr.fullstack.shopapp.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Opening hours of a week as sorted and disjoint intervals of minutes of the week
+ * (see WeekMinutes), held in two int arrays: "is open at", "next opening" and
+ * "next closing" are binary searches. An interval is [start, end), its end can be
+ * past sunday midnight (up to start + 1 week): it is split in two at the end of the week.
+ */
+public class WeeklySchedule {
+    private static final int WEEK = WeekMinutes.MINUTES_PER_WEEK;
+
+    private final int[] ends;
+
+    private final int[] starts;
+
+    private WeeklySchedule(int[] starts, int[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * Pairs of overlapping intervals, as indexes in the given arrays, ordered by first
+     * then second index. Sort and sweep: O(n log n + number of overlaps).
+     */
+    public static List<Overlap> findOverlaps(int[] starts, int[] ends) {
+        int[] pieceStarts = new int[2 * starts.length];
+        int[] pieceEnds = new int[2 * starts.length];
+        int[] pieceIntervals = new int[2 * starts.length];
+        int count = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (ends[i] > WEEK) {
+                pieceStarts[count] = starts[i];
+                pieceEnds[count] = WEEK;
+                pieceIntervals[count++] = i;
+                pieceStarts[count] = 0;
+                pieceEnds[count] = ends[i] - WEEK;
+                pieceIntervals[count++] = i;
+            } else {
+                pieceStarts[count] = starts[i];
+                pieceEnds[count] = ends[i];
+                pieceIntervals[count++] = i;
+            }
+        }
+
+        // pieces ordered by start: start in the high bits, piece number in the low bits
+        long[] order = new long[count];
+        for (int p = 0; p < count; p++) {
+            order[p] = ((long) pieceStarts[p] << 32) | p;
+        }
+        Arrays.sort(order);
+
+        // pieces still open at the start of the current one: all of them overlap it
+        int[] active = new int[count];
+        int activeCount = 0;
+        Set<Long> found = new HashSet<Long>();
+        List<Overlap> overlaps = new ArrayList<Overlap>();
+        for (long key : order) {
+            int p = (int) key;
+            int kept = 0;
+            for (int a = 0; a < activeCount; a++) {
+                if (pieceEnds[active[a]] > pieceStarts[p]) {
+                    active[kept++] = active[a];
+                }
+            }
+            activeCount = kept;
+
+            for (int a = 0; a < activeCount; a++) {
+                int first = Math.min(pieceIntervals[active[a]], pieceIntervals[p]);
+                int second = Math.max(pieceIntervals[active[a]], pieceIntervals[p]);
+                // the two pieces of an interval crossing the end of the week touch the same other interval once
+                if (first != second && found.add(((long) first << 32) | second)) {
+                    overlaps.add(new Overlap(first, second));
+                }
+            }
+            active[activeCount++] = p;
+        }
+
+        overlaps.sort((a, b) -> a.first != b.first
+                ? Integer.compare(a.first, b.first) : Integer.compare(a.second, b.second));
+        return overlaps;
+    }
+
+    /**
+     * Normalized schedule: the intervals are split at the end of the week, sorted,
+     * and the overlapping or adjacent ones are merged.
+     */
+    public static WeeklySchedule of(int[] starts, int[] ends) {
+        // start in the high bits, end in the low bits: sorted by start
+        long[] intervals = new long[2 * starts.length];
+        int count = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (ends[i] > WEEK) {
+                intervals[count++] = ((long) starts[i] << 32) | WEEK;
+                intervals[count++] = ends[i] - WEEK;
+            } else {
+                intervals[count++] = ((long) starts[i] << 32) | ends[i];
+            }
+        }
+        Arrays.sort(intervals, 0, count);
+
+        int[] mergedStarts = new int[count];
+        int[] mergedEnds = new int[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int start = (int) (intervals[i] >>> 32);
+            int end = (int) intervals[i];
+            if (size > 0 && start <= mergedEnds[size - 1]) {
+                mergedEnds[size - 1] = Math.max(mergedEnds[size - 1], end);
+            } else {
+                mergedStarts[size] = start;
+                mergedEnds[size++] = end;
+            }
+        }
+        return new WeeklySchedule(Arrays.copyOf(mergedStarts, size), Arrays.copyOf(mergedEnds, size));
+    }
+
+    public int[] getEnds() {
+        return ends.clone();
+    }
+
+    public int[] getStarts() {
+        return starts.clone();
+    }
+
+    public boolean isOpenAt(int minute) {
+        int m = Math.floorMod(minute, WEEK);
+        int i = indexAtOrBefore(m);
+        return i >= 0 && m < ends[i];
+    }
+
+    // minutes until the closing of the current opening, 0 if closed, -1 if always open
+    public int minutesUntilClosing(int minute) {
+        int m = Math.floorMod(minute, WEEK);
+        int i = indexAtOrBefore(m);
+        if (i < 0 || m >= ends[i]) {
+            return 0;
+        }
+
+        int end = ends[i];
+        // open until sunday midnight: the opening goes on with the one starting monday 00:00
+        if (end == WEEK && starts[0] == 0) {
+            if (i == 0) {
+                return -1;
+            }
+            end = WEEK + ends[0];
+        }
+        return end - m;
+    }
+
+    // minutes until the next opening, 0 if open, -1 if never open
+    public int minutesUntilOpening(int minute) {
+        if (starts.length == 0) {
+            return -1;
+        }
+
+        int m = Math.floorMod(minute, WEEK);
+        int i = indexAtOrBefore(m);
+        if (i >= 0 && m < ends[i]) {
+            return 0;
+        }
+        int next = i + 1 < starts.length ? starts[i + 1] : starts[0] + WEEK;
+        return next - m;
+    }
+
+    // index of the last interval starting at or before the minute, -1 if none
+    private int indexAtOrBefore(int minute) {
+        int i = Arrays.binarySearch(starts, minute);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    public static class Overlap {
+        private final int first;
+
+        private final int second;
+
+        public Overlap(int first, int second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        public int getFirst() {
+            return first;
+        }
+
+        public int getSecond() {
+            return second;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+-- Catalog statistics, precomputed for the analytics endpoints (see AnalyticsService).
+-- Created on start when missing, refreshed concurrently: each view needs a unique index.
+-- The tombstoned shops and categories (deleted_at) are left out, the prices are in cents.
+
+create materialized view if not exists analytics_shop_stats as
+select s.id as shop_id,
+       s.name,
+       count(p.id) as nb_products,
+       (select count(distinct pc.category_id)
+          from products p2
+          join products_categories pc on pc.product_id = p2.id
+          join categories c on c.id = pc.category_id and c.deleted_at is null
+         where p2.shop_id = s.id) as nb_categories,
+       min(p.price_minor) / 100.0 as min_price,
+       round(avg(p.price_minor) / 100.0, 2) as avg_price,
+       max(p.price_minor) / 100.0 as max_price
+  from shops s
+  left join products p on p.shop_id = s.id
+ where s.deleted_at is null
+ group by s.id, s.name;
+
+create unique index if not exists idx_analytics_shop_stats_shop_id on analytics_shop_stats(shop_id);
+create index if not exists idx_analytics_shop_stats_nb_products on analytics_shop_stats(nb_products desc, shop_id);
+
+create materialized view if not exists analytics_category_stats as
+select c.id as category_id,
+       c.name,
+       count(p.id) as nb_products,
+       count(distinct p.shop_id) as nb_shops,
+       min(p.price_minor) / 100.0 as min_price,
+       round(avg(p.price_minor) / 100.0, 2) as avg_price,
+       max(p.price_minor) / 100.0 as max_price
+  from categories c
+  left join products_categories pc on pc.category_id = c.id
+  left join products p on p.id = pc.product_id
+ where c.deleted_at is null
+ group by c.id, c.name;
+
+create unique index if not exists idx_analytics_category_stats_category_id on analytics_category_stats(category_id);
+
+-- distribution of the products of each shop among the categories
+create materialized view if not exists analytics_shop_category_stats as
+select p.shop_id,
+       c.id as category_id,
+       c.name as category_name,
+       count(*) as nb_products
+  from products p
+  join shops s on s.id = p.shop_id and s.deleted_at is null
+  join products_categories pc on pc.product_id = p.id
+  join categories c on c.id = pc.category_id and c.deleted_at is null
+ group by p.shop_id, c.id, c.name;
+
+create unique index if not exists idx_analytics_shop_category_stats_ids
+    on analytics_shop_category_stats(shop_id, category_id);
+
+create materialized view if not exists analytics_shops_per_month as
+select cast(date_trunc('month', created_at) as date) as month,
+       count(*) as nb_shops
+  from shops
+ where deleted_at is null
+ group by 1;
+
+create unique index if not exists idx_analytics_shops_per_month_month on analytics_shops_per_month(month);
+
+-- last refresh of the views, shared by the instances (a single row)
+create table if not exists analytics_refresh_state (
+    id int4 primary key check (id = 1),
+    tables_version varchar(255) not null,
+    refreshed_at timestamp(6) with time zone not null,
+    refresh_millis int8 not null
+);
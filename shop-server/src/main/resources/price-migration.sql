@@ -0,0 +1,16 @@
+-- Prices in cents (products.price_minor) instead of products.price (float4), on the
+-- databases created before. Run before the schema update of Hibernate, does nothing
+-- once done (or on a new database). The analytics views read the old column: they
+-- are dropped here and created again on start (analytics-views.sql).
+do $$
+begin
+    if exists (select 1 from information_schema.columns
+                where table_schema = current_schema() and table_name = 'products' and column_name = 'price') then
+        drop materialized view if exists analytics_shop_stats;
+        drop materialized view if exists analytics_category_stats;
+        alter table products add column if not exists price_minor int8;
+        update products set price_minor = round(price * 100) where price_minor is null;
+        alter table products alter column price_minor set not null;
+        alter table products drop column price;
+    end if;
+end $$;
@@ -0,0 +1,64 @@
+-- Change counters of the catalog tables, read by the ETags of the lists and by the refresh of
+-- the analytics views. A transaction which wrote into a table increments its counter once, when
+-- it commits (deferred trigger): the counters follow the order of the commits, unlike the
+-- versions (current_timestamp is the start of the transaction). The products and the shops
+-- also have a counter per shop ('products/shop/<id>', 'shops/shop/<id>'). Run on start, in a
+-- single transaction.
+
+-- the instances starting together create the function and the triggers one after the other
+select pg_advisory_xact_lock(hashtext('table-changes-init'));
+
+create table if not exists table_changes (
+    name varchar(255) not null,
+    change int8 not null,
+    -- last transaction which incremented the counter
+    xact int8 not null,
+    primary key (name)
+);
+
+create or replace function count_table_change() returns trigger as $$
+declare
+    names text[] := array[tg_table_name];
+    shop_id text;
+begin
+    -- tg_argv[0]: column of the shop, if any
+    if tg_nargs > 0 then
+        if tg_op <> 'INSERT' then
+            shop_id := to_jsonb(old) ->> tg_argv[0];
+            if shop_id is not null then
+                names := names || (tg_table_name || '/shop/' || shop_id);
+            end if;
+        end if;
+        if tg_op <> 'DELETE' then
+            shop_id := to_jsonb(new) ->> tg_argv[0];
+            if shop_id is not null then
+                names := names || (tg_table_name || '/shop/' || shop_id);
+            end if;
+        end if;
+    end if;
+
+    -- the committing transactions increment the counters one after the other, whatever the
+    -- order of their writes, without deadlock
+    perform pg_advisory_xact_lock(hashtext('table_changes'));
+    -- once per transaction: the other rows it wrote find the counter already incremented
+    insert into table_changes (name, change, xact)
+    select distinct n, 1, pg_current_xact_id()::text::int8 from unnest(names) n
+    on conflict (name) do update set change = table_changes.change + 1, xact = excluded.xact
+    where table_changes.xact <> excluded.xact;
+    return null;
+end
+$$ language plpgsql;
+
+do $$
+declare
+    t record;
+begin
+    for t in select * from (values ('products', 'shop_id'), ('shops', 'id'), ('categories', null)) v(name, shop)
+    loop
+        if not exists (select 1 from pg_trigger where tgrelid = t.name::regclass and tgname = t.name || '_change') then
+            execute format('create constraint trigger %I after insert or update or delete on %I '
+                    || 'deferrable initially deferred for each row execute function count_table_change(%s)',
+                    t.name || '_change', t.name, coalesce(quote_literal(t.shop), ''));
+        end if;
+    end loop;
+end $$;
@@ -0,0 +1,122 @@
+package fr.fullstack.shopapp.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static fr.fullstack.shopapp.config.ReplicaRoutingDataSource.PRIMARY;
+import static fr.fullstack.shopapp.config.ReplicaRoutingDataSource.REPLICA;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pool of the connection of each transaction, with the datasource of DataSourceConfig
+ * (LazyConnectionDataSourceProxy over ReplicaRoutingDataSource) on two mocked pools.
+ */
+class ReplicaRoutingDataSourceTest {
+    // pool which gave each connection
+    private final Map<Connection, String> pools = new HashMap<Connection, String>();
+
+    private DataSource dataSource;
+
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(
+                pool(PRIMARY), pool(REPLICA), new SimpleMeterRegistry());
+        routing.afterPropertiesSet();
+        dataSource = new LazyConnectionDataSourceProxy(routing);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void readOnlyTransactionsReadFromTheReplica() {
+        inRequest();
+
+        assertThat(poolOf(true)).isEqualTo(REPLICA);
+        assertThat(poolOf(true)).isEqualTo(REPLICA);
+    }
+
+    @Test
+    void readOnlyTransactionsOnPrimaryReadFromThePrimary() {
+        inRequest();
+
+        // the version of an ETag, then the body
+        assertThat(ReplicaRoutingDataSource.onPrimary(() -> poolOf(true))).isEqualTo(PRIMARY);
+        assertThat(poolOf(true)).isEqualTo(REPLICA);
+    }
+
+    @Test
+    void writeAfterAReadGoesToThePrimary() {
+        inRequest();
+
+        assertThat(poolOf(true)).isEqualTo(REPLICA);
+        assertThat(poolOf(false)).isEqualTo(PRIMARY);
+        // the request reads its own writes
+        assertThat(poolOf(true)).isEqualTo(PRIMARY);
+    }
+
+    @Test
+    void readsOfAnotherRequestAfterAWriteGoToTheReplica() {
+        inRequest();
+        assertThat(poolOf(false)).isEqualTo(PRIMARY);
+
+        inRequest();
+        assertThat(poolOf(true)).isEqualTo(REPLICA);
+    }
+
+    @Test
+    void statementsOutsideOfARequestAndOfATransactionGoToThePrimary() throws SQLException {
+        assertThat(poolOf(true)).isEqualTo(REPLICA);
+        try (Connection connection = dataSource.getConnection()) {
+            assertThat(pools.get(((ConnectionProxy) connection).getTargetConnection())).isEqualTo(PRIMARY);
+        }
+    }
+
+    private void inRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    private DataSource pool(String name) throws SQLException {
+        DataSource pool = mock(DataSource.class);
+        when(pool.getConnection()).thenAnswer(invocation -> {
+            Connection connection = mock(Connection.class);
+            pools.put(connection, name);
+            return connection;
+        });
+        return pool;
+    }
+
+    // the connection is taken at the first statement of the transaction
+    private String poolOf(boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> {
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            return pools.get(((ConnectionProxy) connection).getTargetConnection());
+        });
+    }
+}
@@ -0,0 +1,101 @@
+package fr.fullstack.shopapp.controller;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.elasticsearch.ElasticsearchContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.MountableFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Number of SQL statements of the list endpoints, counted by QueryCountInspector through
+ * the http.server.requests.queries metric of QueryBudgetFilter: a page of 50 entities must
+ * run the same statements as a page of 5, within the query budget. Needs Docker.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(properties = {
+        "shop.search.rebuild.on-start=never",
+        // the second-level cache would hide the lazy loadings of the pages
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureMockMvc
+@Sql(scripts = "/query-count-data.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_CLASS)
+class ListQueryCountTest {
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15")
+            .withCopyFileToContainer(MountableFile.forHostPath("sql/create_tables.sql"),
+                    "/docker-entrypoint-initdb.d/create_tables.sql");
+
+    @Container
+    private static final ElasticsearchContainer ELASTICSEARCH = new ElasticsearchContainer(
+            "docker.elastic.co/elasticsearch/elasticsearch:7.17.25")
+            .withEnv("ES_JAVA_OPTS", "-Xms512m -Xmx512m")
+            .withEnv("xpack.security.enabled", "false");
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Value("${shop.query-budget.max-per-request}")
+    private int maxQueriesPerRequest;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("ES_URL", ELASTICSEARCH::getHttpHostAddress);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "/api/v1/products?shopId=1",
+            "/api/v1/products?shopId=1&categoryId=2",
+            "/api/v1/products?shopId=1&minPrice=0&maxPrice=100&sortBy=priceDesc",
+            "/api/v1/products/scroll?shopId=1",
+            "/api/v1/shops?sortBy=name",
+            "/api/v1/shops?openAt=2024-01-01T10:00",
+            "/api/v1/shops/scroll?sortBy=name"
+    })
+    void listQueriesDoNotDependOnPageSize(String path) throws Exception {
+        // first request: the statements prepared once are not counted
+        queries(path + "&size=5");
+
+        int smallPage = queries(path + "&size=5");
+        int largePage = queries(path + "&size=50");
+
+        assertThat(largePage).isEqualTo(smallPage).isLessThanOrEqualTo(maxQueriesPerRequest);
+    }
+
+    private int queries(String path) throws Exception {
+        String uri = path.substring(0, path.indexOf('?'));
+        double before = totalQueries(uri);
+        mockMvc.perform(get(path)).andExpect(status().isOk());
+        return (int) Math.round(totalQueries(uri) - before);
+    }
+
+    private double totalQueries(String uri) {
+        DistributionSummary summary = meterRegistry.find("http.server.requests.queries")
+                .tag("uri", uri)
+                .summary();
+        return summary == null ? 0 : summary.totalAmount();
+    }
+}
@@ -0,0 +1,112 @@
+package fr.fullstack.shopapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class WeeklyScheduleTest {
+    private static final int WEEK = WeekMinutes.MINUTES_PER_WEEK;
+
+    // day from 1 (monday) to 7 (sunday)
+    private static int at(int day, String time) {
+        return WeekMinutes.of(day, LocalTime.parse(time));
+    }
+
+    private static int closing(int day, String openAt, String closeAt) {
+        return WeekMinutes.closing(day, LocalTime.parse(openAt), LocalTime.parse(closeAt));
+    }
+
+    @Test
+    void findOverlapsAcrossSundayMidnight() {
+        int[] starts = {at(7, "23:00"), at(1, "00:30"), at(7, "22:00"), at(1, "02:00")};
+        int[] ends = {closing(7, "23:00", "01:00"), at(1, "01:30"), at(7, "23:30"), at(1, "03:00")};
+
+        List<WeeklySchedule.Overlap> overlaps = WeeklySchedule.findOverlaps(starts, ends);
+
+        assertThat(overlaps)
+                .extracting(WeeklySchedule.Overlap::getFirst, WeeklySchedule.Overlap::getSecond)
+                .containsExactly(tuple(0, 1), tuple(0, 2));
+    }
+
+    @Test
+    void findOverlapsReportsAPairOnceWhenBothPiecesOverlap() {
+        // the two pieces of the first interval (sunday and monday) both overlap the whole week
+        int[] starts = {at(7, "23:00"), 0};
+        int[] ends = {closing(7, "23:00", "02:00"), WEEK};
+
+        assertThat(WeeklySchedule.findOverlaps(starts, ends))
+                .extracting(WeeklySchedule.Overlap::getFirst, WeeklySchedule.Overlap::getSecond)
+                .containsExactly(tuple(0, 1));
+    }
+
+    @Test
+    void findOverlapsIgnoresAdjacentIntervals() {
+        // the last one ends on monday 09:00, when the first one starts
+        int[] starts = {at(1, "09:00"), at(1, "12:00"), at(7, "22:00")};
+        int[] ends = {at(1, "12:00"), at(1, "18:00"), closing(7, "22:00", "09:00")};
+
+        assertThat(WeeklySchedule.findOverlaps(starts, ends)).isEmpty();
+    }
+
+    @Test
+    void ofMergesAdjacentAndOverlappingIntervals() {
+        int[] starts = {at(1, "14:00"), at(1, "09:00"), at(1, "12:00"), at(2, "09:00")};
+        int[] ends = {at(1, "18:00"), at(1, "12:00"), at(1, "15:00"), at(2, "12:00")};
+
+        WeeklySchedule schedule = WeeklySchedule.of(starts, ends);
+
+        assertThat(schedule.getStarts()).containsExactly(at(1, "09:00"), at(2, "09:00"));
+        assertThat(schedule.getEnds()).containsExactly(at(1, "18:00"), at(2, "12:00"));
+    }
+
+    @Test
+    void ofSplitsAnIntervalAtTheEndOfTheWeek() {
+        WeeklySchedule schedule = WeeklySchedule.of(
+                new int[] {at(7, "23:00")}, new int[] {closing(7, "23:00", "01:00")});
+
+        assertThat(schedule.getStarts()).containsExactly(0, at(7, "23:00"));
+        assertThat(schedule.getEnds()).containsExactly(at(1, "01:00"), WEEK);
+    }
+
+    @Test
+    void minutesUntilClosingGoesOnAfterSundayMidnight() {
+        WeeklySchedule schedule = WeeklySchedule.of(
+                new int[] {at(7, "23:00")}, new int[] {closing(7, "23:00", "01:00")});
+
+        assertThat(schedule.minutesUntilClosing(at(7, "23:30"))).isEqualTo(90);
+        assertThat(schedule.minutesUntilClosing(at(1, "00:30"))).isEqualTo(30);
+        // minutes out of the week are read modulo the week
+        assertThat(schedule.minutesUntilClosing(at(7, "23:30") - WEEK)).isEqualTo(90);
+        assertThat(schedule.minutesUntilClosing(at(1, "01:00"))).isZero();
+    }
+
+    @Test
+    void minutesUntilClosingIsMinusOneWhenAlwaysOpen() {
+        WeeklySchedule schedule = WeeklySchedule.of(new int[] {0}, new int[] {WEEK});
+
+        assertThat(schedule.minutesUntilClosing(at(7, "23:59"))).isEqualTo(-1);
+        assertThat(schedule.minutesUntilClosing(0)).isEqualTo(-1);
+    }
+
+    @Test
+    void minutesUntilOpeningWrapsToNextWeek() {
+        WeeklySchedule schedule = WeeklySchedule.of(new int[] {at(1, "01:00")}, new int[] {at(1, "02:00")});
+
+        assertThat(schedule.minutesUntilOpening(at(7, "23:00"))).isEqualTo(120);
+        assertThat(schedule.minutesUntilOpening(at(1, "00:00"))).isEqualTo(60);
+        assertThat(schedule.minutesUntilOpening(-60)).isEqualTo(120);
+        assertThat(schedule.minutesUntilOpening(at(1, "01:30"))).isZero();
+    }
+
+    @Test
+    void minutesUntilOpeningIsMinusOneWhenNeverOpen() {
+        WeeklySchedule schedule = WeeklySchedule.of(new int[0], new int[0]);
+
+        assertThat(schedule.minutesUntilOpening(at(3, "12:00"))).isEqualTo(-1);
+        assertThat(schedule.minutesUntilClosing(at(3, "12:00"))).isZero();
+    }
+}
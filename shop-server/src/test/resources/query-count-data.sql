@@ -0,0 +1,27 @@
+-- 60 shops, the first two with 60 products each: a product has a FR and an EN name and two categories
+insert into categories (id, name)
+select i, 'Catégorie ' || i from generate_series(1, 5) i;
+
+insert into shops (id, name, created_at, in_vacations)
+select i, 'Boutique ' || i, date '2020-01-01' + i, false from generate_series(1, 60) i;
+
+insert into opening_hours (id, day, open_at, close_at, start_minute, end_minute)
+select (s - 1) * 7 + d, d, time '09:00', time '18:00', (d - 1) * 1440 + 540, (d - 1) * 1440 + 1080
+from generate_series(1, 60) s, generate_series(1, 6) d;
+insert into shops_opening_hours (shop_id, opening_hours_id)
+select s, (s - 1) * 7 + d from generate_series(1, 60) s, generate_series(1, 6) d;
+
+insert into products (id, price_minor, shop_id)
+select i, i * 100, 1 + (i - 1) / 60 from generate_series(1, 120) i;
+insert into products_categories (product_id, category_id)
+select i, 1 + i % 5 from generate_series(1, 120) i
+union all select i, 1 + (i + 1) % 5 from generate_series(1, 120) i;
+
+insert into localized_product (id, locale, name, description)
+select 2 * i - 1, 'FR', 'Produit ' || i, 'Description du produit ' || i from generate_series(1, 120) i
+union all select 2 * i, 'EN', 'Product ' || i, 'Description of product ' || i from generate_series(1, 120) i;
+insert into products_localized_product (product_id, localized_product_id)
+select i, 2 * i - 1 from generate_series(1, 120) i
+union all select i, 2 * i from generate_series(1, 120) i;
+
+update shops set nb_products = 60, nb_categories = 5 where id <= 2;